@@ -2,19 +2,33 @@
  * BST.java 
  * This class contains functions for maintaining a BST that tracks the value, 
  * subtree size, and rank of each node contained in the tree. 
+ * <p>
+ * A tree can also be created in persistent mode, where insert() and Delete()
+ * never modify a node that is already in the tree. Instead, the nodes on the
+ * path to the change are copied and the new root shares every unchanged 
+ * subtree with the old one. The root is published through a volatile field, so
+ * snapshot() hands readers an immutable view of the tree at that moment, which
+ * they can query without locks while a writer keeps updating the tree. Writers
+ * must still be serialized by the caller. Since nodes are shared between 
+ * versions, ranks are not stored in persistent mode; they are derived from 
+ * subtree sizes when reported.
  * Dependencies: BSTNode.java
  */
 
 package binarysearchtree;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
 
 public class BST 
 {
-    /* the root of this tree */
-    BSTNode m_objRootNode;
+    /* the root of this tree, volatile so that snapshots are safely published */
+    volatile BSTNode m_objRootNode;
     /* k-value for insertion criterion (min distance from other node values) */
     private int K_VALUE;
+    /* copy nodes on write instead of modifying them (see class comment) */
+    private final boolean m_bPersistent;
 	
     /**
      * Constructor
@@ -25,6 +39,7 @@ public class BST
     {
         m_objRootNode = null;
         K_VALUE = 0; 
+        m_bPersistent = false;
     }
     
     /**
@@ -37,28 +52,84 @@ public class BST
     {
         m_objRootNode = null;
         K_VALUE = k;
+        m_bPersistent = false;
+    }
+    
+    /**
+     * Constructor
+     * Each tree is initialized as an empty tree with root set to null, and sets
+     * the k-value constraint and whether the tree is persistent. 
+     * @param k, the K-value constraint for insertion.
+     * @param bPersistent, true to copy nodes on write (see class comment).
+     */
+    public BST(int k, boolean bPersistent)
+    {
+        m_objRootNode = null;
+        K_VALUE = k;
+        m_bPersistent = bPersistent;
+    }
+    
+    /**
+     * This method returns a view of this tree that later updates to this tree
+     * do not affect. In persistent mode this is O(1), as the snapshot simply
+     * shares the current root; otherwise the tree is copied.
+     * @return the snapshot, itself a persistent tree with the same k-value.
+     */
+    public BST snapshot()
+    {
+        BST objSnapshot = new BST( K_VALUE, true );
+        BSTNode objRoot = m_objRootNode;
+        if( !m_bPersistent )
+        {
+            int[] nKeys = new int[Size( objRoot )];
+            Flatten( objRoot, nKeys, 0 );
+            objRoot = Build( nKeys, 0, nKeys.length - 1 );
+        }
+        objSnapshot.m_objRootNode = objRoot;
+        return( objSnapshot );
     }
 
     /* METHODS FOR INSERTION/DELETION/SEARCH */ 
     
     /**
      * This is a wrapper method for inserting a node into the tree based on its 
-     * key value then adjusting the rank of each node in the tree.
+     * key value then shifting the ranks of the nodes after it. Any node 
+     * inserted into the tree must pass the k-time test, where each node in the
+     * tree cannot be within k distance of any other node. Only the nearest keys
+     * on either side can violate the test, so it is enough to check the 
+     * predecessor and successor of the key value. 
+     * <p>
+     * The tree is not balanced, so finding them takes O(height) steps, which
+     * is O(n) for keys inserted in order rather than O(log n). Shifting the 
+     * ranks also touches every node after the new one, so an insertion costs
+     * O(n) in the worst case. For high insert rates, load sorted keys with
+     * fromSorted() instead, or use a persistent tree, which stores no ranks.
      * @param nKeyValue, the key value of the new node. 
+     * @return true if the node was inserted, false if the key value is already
+     * in the tree or fails the k-time test.
      */
-    public void insert( int nKeyValue ) 
+    public boolean insert( int nKeyValue ) 
     {
+        BSTNode objFloor = Floor( m_objRootNode, nKeyValue );
+        if( ( objFloor != null && objFloor.GetKeyValue() == nKeyValue )
+            || withinDistance( objFloor, nKeyValue, K_VALUE ) )
+        {
+            return( false );
+        }
+        
     	// The root node is returned to m_objRootNode from Insert()
     	m_objRootNode = Insert( nKeyValue, m_objRootNode );
-        adjustRanks();
+        if( !m_bPersistent )
+        {
+            ShiftRanks( nKeyValue, 1 );
+        }
+        return( true );
     }    
 
     /**
      * Recursive method to insert a new node into the tree based on its key value.
-     * Any node inserted into the tree must pass the k-time test, where each node
-     * in the tree cannot be within k distance of any other node. The k-value 
-     * for the insertion criterion is set to zero upon initialization, but can be
-     * reset to any value. 
+     * The key value has already passed the k-time test in insert(), so every 
+     * node on the path changes and is copied first in persistent mode. 
      * @param nKeyValue, the key value of the new node.
      * @param objNode, the current node as the tree is traversed. 
      * @return the root of this tree after insertion. 
@@ -70,16 +141,11 @@ public class BST
         {
             return( new BSTNode(nKeyValue) );
         }
-        // if this node violates the K-constraint, just return
-        else if(objNode.GetKeyValue()- nKeyValue < K_VALUE 
-                && objNode.GetKeyValue() - nKeyValue > - K_VALUE)
-        {
-            return( objNode );
-        }
         // here we need to walk left.
         else if( nKeyValue < objNode.GetKeyValue() )
         {
             // Set the left node of this object by recursively walking left.
+            objNode = CopyOnWrite( objNode );
             objNode.SetLeftNode( Insert( nKeyValue, objNode.GetLeftNode() ) );
         }
         
@@ -87,6 +153,7 @@ public class BST
         else if( nKeyValue > objNode.GetKeyValue() )
         {
             // set the right node of this object by recursively walking right.
+            objNode = CopyOnWrite( objNode );
             objNode.SetRightNode( Insert( nKeyValue, objNode.GetRightNode() ) );
         }
    
@@ -96,13 +163,21 @@ public class BST
     
     /**
      * This is a wrapper method for deleting a node from the tree based on its 
-     * key value then adjusting the rank of each node in the tree.
+     * key value then shifting the ranks of the nodes after it.
      * @param nKeyValue, the key value of the new node. 
      */
     public void Delete(int nKeyValue)
     {
+        // nothing to delete, and nothing to copy in persistent mode
+        if( Search( m_objRootNode, nKeyValue ) == null )
+        {
+            return;
+        }
     	m_objRootNode = Delete( nKeyValue, m_objRootNode );
-        adjustRanks();
+        if( !m_bPersistent )
+        {
+            ShiftRanks( nKeyValue, -1 );
+        }
     }
     
     /**
@@ -123,6 +198,7 @@ public class BST
     	else if(nKeyValue < objNode.GetKeyValue())
     	{
             // continue to search recursively for key
+            objNode = CopyOnWrite( objNode );
             objNode.SetLeftNode( Delete(nKeyValue, objNode.GetLeftNode()) );
             // adjust tree size on the way up
             objNode.SetTreeSize();
@@ -130,6 +206,7 @@ public class BST
     	// search the right subtree
     	else if(nKeyValue > objNode.GetKeyValue())
     	{
+            objNode = CopyOnWrite( objNode );
             objNode.SetRightNode( Delete(nKeyValue, objNode.GetRightNode()) );
             // adjust treesize on the way up
             objNode.SetTreeSize();
@@ -161,6 +238,7 @@ public class BST
                 BSTNode objMaxNode = getMaxNode(objNode.GetLeftNode());
                 // copy it and set its children to the node to be deleted
                 BSTNode objReplacementNode = new BSTNode(objMaxNode.GetKeyValue());
+                objReplacementNode.SetRank(objMaxNode.GetRank());
                 objReplacementNode.SetLeftNode(objNode.GetLeftNode());
                 objReplacementNode.SetRightNode(objNode.GetRightNode());
                 // recursively delete objMaxNode from its former location in the left subtree
@@ -225,40 +303,189 @@ public class BST
     	return( Search( objNode, nKeyValue ) );
     }
     
+    /**
+     * This method finds the node whose key value is closest to a specified key
+     * value, which need not be in the tree. Ties go to the smaller key value.
+     * This walks down the tree twice, O(height) each, which is O(n) rather
+     * than O(log n) when the tree is unbalanced.
+     * @param nKeyValue, the key value queried.
+     * @return the nearest node, or null if the tree is empty.
+     */
+    public BSTNode nearest( int nKeyValue )
+    {
+        BSTNode objFloor = Floor( m_objRootNode, nKeyValue );
+        BSTNode objCeiling = Ceiling( m_objRootNode, nKeyValue );
+        if( objFloor == null )
+        {
+            return( objCeiling );
+        }
+        else if( objCeiling == null )
+        {
+            return( objFloor );
+        }
+        // compare as longs, the distances can overflow an int
+        long lBelow = (long) nKeyValue - objFloor.GetKeyValue();
+        long lAbove = (long) objCeiling.GetKeyValue() - nKeyValue;
+        return( lAbove < lBelow ? objCeiling : objFloor );
+    }
+    
+    /**
+     * This method checks whether any key value in the tree is less than k away
+     * from a specified key value, i.e. whether that key value would fail the 
+     * k-time test used by insert(). Like nearest(), it costs up to two walks
+     * of O(height), not O(log n), as the tree is not balanced.
+     * @param nKeyValue, the key value queried.
+     * @param k, the distance.
+     * @return true if the predecessor or successor is within distance k.
+     */
+    public boolean withinDistance( int nKeyValue, int k )
+    {
+        return( withinDistance( Floor( m_objRootNode, nKeyValue ), nKeyValue, k ) );
+    }
+    
+    /**
+     * This method checks whether the predecessor or successor of a key value
+     * is less than k away, given the floor of the key value already found.
+     * @param objFloor, the floor node of the key value, or null if none.
+     * @param nKeyValue, the key value queried.
+     * @param k, the distance.
+     * @return true if the predecessor or successor is within distance k.
+     */
+    private boolean withinDistance( BSTNode objFloor, int nKeyValue, int k )
+    {
+        if( objFloor != null && (long) nKeyValue - objFloor.GetKeyValue() < k )
+        {
+            return( true );
+        }
+        BSTNode objCeiling = Ceiling( m_objRootNode, nKeyValue );
+        return( objCeiling != null && (long) objCeiling.GetKeyValue() - nKeyValue < k );
+    }
+    
+    /**
+     * This method finds the node with the largest key value less than or equal
+     * to a specified key value, in a single walk down the tree. Each step to
+     * the right passes a closer candidate.
+     * @param objNode, the root of the subtree searched.
+     * @param nKeyValue, the key value queried.
+     * @return the floor node, or null if every key value is greater.
+     */
+    private BSTNode Floor( BSTNode objNode, int nKeyValue )
+    {
+        BSTNode objFloor = null;
+        while( objNode != null )
+        {
+            if( nKeyValue == objNode.GetKeyValue() )
+            {
+                return( objNode );
+            }
+            // this node is a candidate, but a closer one may be to its right
+            else if( nKeyValue > objNode.GetKeyValue() )
+            {
+                objFloor = objNode;
+                objNode = objNode.GetRightNode();
+            }
+            else
+            {
+                objNode = objNode.GetLeftNode();
+            }
+        }
+        return( objFloor );
+    }
+    
+    /**
+     * This method finds the node with the smallest key value greater than or
+     * equal to a specified key value; it mirrors Floor(), keeping the last 
+     * node it went left from.
+     * @param objNode, the root of the subtree searched.
+     * @param nKeyValue, the key value queried.
+     * @return the ceiling node, or null if every key value is smaller.
+     */
+    private BSTNode Ceiling( BSTNode objNode, int nKeyValue )
+    {
+        BSTNode objCeiling = null;
+        while( objNode != null )
+        {
+            if( nKeyValue == objNode.GetKeyValue() )
+            {
+                return( objNode );
+            }
+            // this node is a candidate, but a closer one may be to its left
+            else if( nKeyValue < objNode.GetKeyValue() )
+            {
+                objCeiling = objNode;
+                objNode = objNode.GetLeftNode();
+            }
+            else
+            {
+                objNode = objNode.GetRightNode();
+            }
+        }
+        return( objCeiling );
+    }
+    
     /* SUPPORT METHODS FOR INSERTION/DELETION */
     
     /**
-     * This is a quick and dirty method for adjusting the ranks of all nodes in 
-     * the tree after inserting/deleting a node by adding all the nodes, in-order 
-     * by key value, into a list and then setting rank as we iterate through each 
-     * one. 
+     * This method returns the node itself, or in persistent mode a copy of it
+     * that can be modified without affecting any published version.
+     * @param objNode, the node about to be modified.
+     * @return the node to modify.
      */
-    private void adjustRanks()
+    private BSTNode CopyOnWrite( BSTNode objNode )
     {
-        ArrayList<BSTNode> list = new ArrayList<>();
-        Rank(m_objRootNode, list);
-        
-        for(int i = 0; i < list.size(); i++)
+        return( m_bPersistent ? objNode.Copy() : objNode );
+    }
+    
+    /**
+     * This method adjusts the ranks after a key value was inserted or deleted:
+     * every node with a greater key value moves by the change, and the node 
+     * with the key value itself, if any, gets its rank from the subtree sizes
+     * on its path. Subtrees of smaller key values are skipped, so this visits
+     * the path to the key value and the nodes after it, not the whole tree.
+     * @param nKeyValue, the key value inserted or deleted.
+     * @param nChange, 1 after an insertion or -1 after a deletion.
+     */
+    private void ShiftRanks( int nKeyValue, int nChange )
+    {
+        BSTNode objNode = m_objRootNode;
+        // the number of key values less than every key in objNode's subtree
+        int nOffset = 0;
+        while( objNode != null )
         {
-            list.get(i).SetRank(i);
+            if( nKeyValue < objNode.GetKeyValue() )
+            {
+                objNode.SetRank( objNode.GetRank() + nChange );
+                ShiftAllRanks( objNode.GetRightNode(), nChange );
+                objNode = objNode.GetLeftNode();
+            }
+            else if( nKeyValue > objNode.GetKeyValue() )
+            {
+                nOffset += Size( objNode.GetLeftNode() ) + 1;
+                objNode = objNode.GetRightNode();
+            }
+            else
+            {
+                objNode.SetRank( nOffset + Size( objNode.GetLeftNode() ) );
+                ShiftAllRanks( objNode.GetRightNode(), nChange );
+                return;
+            }
         }
     }
     
     /**
-     * This method performs an in-order traversal of this tree and adds each node
-     * to the specified list. 
-     * @param objNode, the current node. 
-     * @param list, the in-order list of nodes. 
+     * This method adds a change to the rank of every node in a subtree.
+     * @param objNode, the root of the subtree. 
+     * @param nChange, the change of rank.
      */
-    private void Rank(BSTNode objNode, ArrayList<BSTNode> list)
+    private static void ShiftAllRanks( BSTNode objNode, int nChange )
     {
-        if(objNode == null || list == null)
+        if( objNode == null )
         {
             return;
         }
-        Rank(objNode.GetLeftNode(), list);
-        list.add(objNode);
-        Rank(objNode.GetRightNode(), list);
+        objNode.SetRank( objNode.GetRank() + nChange );
+        ShiftAllRanks( objNode.GetLeftNode(), nChange );
+        ShiftAllRanks( objNode.GetRightNode(), nChange );
     }
     
     /**
@@ -382,6 +609,244 @@ public class BST
         System.out.print(objNode.GetKeyValue() + " ");
     }
     
+    /* BULK CONSTRUCTION AND SET OPERATIONS */
+    
+    /**
+     * This method builds a perfectly balanced tree from an array of key values
+     * in ascending order in O(n), instead of inserting (and re-ranking) one key
+     * at a time. Duplicate key values are only added once. The new tree has a
+     * k-value of zero.
+     * @param nKeyValues, the key values in ascending order.
+     * @return the new tree.
+     */
+    public static BST fromSorted( int[] nKeyValues )
+    {
+        BST objTree = new BST();
+        if( nKeyValues == null )
+        {
+            System.out.println("WARNING: attempting to pass null argument to fromSorted(int[])");
+            return( objTree );
+        }
+        
+        // drop duplicates while checking the order
+        int[] nKeys = new int[nKeyValues.length];
+        int nCount = 0;
+        for( int i = 0; i < nKeyValues.length; i++ )
+        {
+            if( nCount > 0 && nKeyValues[i] < nKeys[nCount-1] )
+            {
+                System.out.println("WARNING: fromSorted(int[]) input is not sorted, sorting a copy");
+                nKeyValues = nKeyValues.clone();
+                Arrays.sort( nKeyValues );
+                i = -1;
+                nCount = 0;
+            }
+            else if( nCount == 0 || nKeyValues[i] != nKeys[nCount-1] )
+            {
+                nKeys[nCount++] = nKeyValues[i];
+            }
+        }
+        
+        objTree.m_objRootNode = Build( nKeys, 0, nCount - 1 );
+        return( objTree );
+    }
+    
+    /**
+     * This recursive method builds a balanced subtree from a range of sorted
+     * key values. The middle key becomes the root, and since the keys are in
+     * order its index is also its rank.
+     * @param nKeys, the sorted key values.
+     * @param nLow, the index of the first key of the range.
+     * @param nHigh, the index of the last key of the range.
+     * @return the root of the subtree, or null for an empty range.
+     */
+    static BSTNode Build( int[] nKeys, int nLow, int nHigh )
+    {
+        if( nLow > nHigh )
+        {
+            return( null );
+        }
+        int nMid = ( nLow + nHigh ) >>> 1;
+        BSTNode objNode = new BSTNode( nKeys[nMid] );
+        objNode.SetLeftNode( Build( nKeys, nLow, nMid - 1 ) );
+        objNode.SetRightNode( Build( nKeys, nMid + 1, nHigh ) );
+        objNode.SetRank( nMid );
+        return( objNode );
+    }
+    
+    /**
+     * This method returns a new tree containing the keys of this tree and of 
+     * another tree. Neither tree is modified. The result takes the k-value of
+     * this tree, but the k-constraint is not applied to the merged keys. See
+     * SetOperation() for the cost.
+     * @param objOther, the other tree.
+     * @return the union of both trees.
+     */
+    public BST union( BST objOther )
+    {
+        return( SetOperation( UNION, objOther ) );
+    }
+    
+    /**
+     * This method returns a new tree containing the keys that are in both this
+     * tree and another tree. Neither tree is modified. See SetOperation() for
+     * the cost.
+     * @param objOther, the other tree.
+     * @return the intersection of both trees.
+     */
+    public BST intersect( BST objOther )
+    {
+        return( SetOperation( INTERSECT, objOther ) );
+    }
+    
+    /**
+     * This method returns a new tree containing the keys of this tree that are
+     * not in another tree. Neither tree is modified. See SetOperation() for 
+     * the cost.
+     * @param objOther, the other tree.
+     * @return the difference of this tree minus the other tree.
+     */
+    public BST difference( BST objOther )
+    {
+        return( SetOperation( DIFFERENCE, objOther ) );
+    }
+    
+    /* the set operations of SetOperation() */
+    private static final int UNION = 0;
+    private static final int INTERSECT = 1;
+    private static final int DIFFERENCE = 2;
+    
+    /**
+     * This method flattens both trees into sorted arrays, merges the arrays in
+     * one linear pass, and builds a balanced tree from the result, ranked as
+     * it is built. Every set operation therefore costs O(n+m) time and memory
+     * for trees of n and m keys, however small one of them is: the result 
+     * cannot share nodes with the inputs, since a tree that is not persistent
+     * modifies its nodes (and their ranks) in place.
+     * @param nOperation, UNION, INTERSECT or DIFFERENCE.
+     * @param objOther, the other tree.
+     * @return the new tree, with the k-value and mode of this tree.
+     */
+    private BST SetOperation( int nOperation, BST objOther )
+    {
+        int[] nFirst = new int[Size( m_objRootNode )];
+        Flatten( m_objRootNode, nFirst, 0 );
+        int[] nSecond = new int[Size( objOther.m_objRootNode )];
+        Flatten( objOther.m_objRootNode, nSecond, 0 );
+        
+        int[] nKeys = new int[nOperation == UNION ? nFirst.length + nSecond.length : nFirst.length];
+        int nCount = 0;
+        int i = 0, j = 0;
+        while( i < nFirst.length && j < nSecond.length )
+        {
+            if( nFirst[i] < nSecond[j] )
+            {
+                // only in the first tree
+                if( nOperation != INTERSECT )
+                {
+                    nKeys[nCount++] = nFirst[i];
+                }
+                i++;
+            }
+            else if( nFirst[i] > nSecond[j] )
+            {
+                // only in the second tree
+                if( nOperation == UNION )
+                {
+                    nKeys[nCount++] = nSecond[j];
+                }
+                j++;
+            }
+            else
+            {
+                // in both trees
+                if( nOperation != DIFFERENCE )
+                {
+                    nKeys[nCount++] = nFirst[i];
+                }
+                i++;
+                j++;
+            }
+        }
+        // the rest of either tree is in no other
+        if( nOperation != INTERSECT )
+        {
+            while( i < nFirst.length )
+            {
+                nKeys[nCount++] = nFirst[i++];
+            }
+        }
+        if( nOperation == UNION )
+        {
+            while( j < nSecond.length )
+            {
+                nKeys[nCount++] = nSecond[j++];
+            }
+        }
+        
+        BST objResult = new BST( K_VALUE, m_bPersistent );
+        objResult.m_objRootNode = Build( nKeys, 0, nCount - 1 );
+        return( objResult );
+    }
+    
+    /**
+     * This method writes the key values of a subtree into an array in order.
+     * @param objNode, the root of the subtree.
+     * @param nKeys, the array of key values.
+     * @param nIndex, the index of the first key value of this subtree.
+     * @return the index following the last key value of this subtree.
+     */
+    static int Flatten( BSTNode objNode, int[] nKeys, int nIndex )
+    {
+        if( objNode == null )
+        {
+            return( nIndex );
+        }
+        nIndex = Flatten( objNode.GetLeftNode(), nKeys, nIndex );
+        nKeys[nIndex++] = objNode.GetKeyValue();
+        return( Flatten( objNode.GetRightNode(), nKeys, nIndex ) );
+    }
+    
+    /* the size of a possibly empty subtree */
+    static int Size( BSTNode objNode )
+    {
+        return( objNode == null ? 0 : objNode.GetTreeSize() );
+    }
+    
+    /* SERIALIZATION METHODS */
+    
+    /**
+     * This method writes this tree to a compact binary snapshot that can be
+     * memory-mapped by BSTIndex. See BSTIndex for the file format.
+     * @param objPath, the file to write, replaced if it exists.
+     * @throws IOException if the file cannot be written.
+     */
+    public void save( Path objPath ) throws IOException
+    {
+        BSTNode objRoot = m_objRootNode;
+        int[] nKeys = new int[Size( objRoot )];
+        Flatten( objRoot, nKeys, 0 );
+        BSTIndex.Write( objPath, nKeys, K_VALUE );
+    }
+    
+    /**
+     * This method rebuilds a balanced tree from a snapshot written by save().
+     * The snapshot is memory-mapped and read sequentially, so loading is O(n)
+     * with no per-key parsing; to query the snapshot without building any 
+     * nodes at all, use BSTIndex.open() instead.
+     * @param objPath, the snapshot file.
+     * @return the new tree, with the k-value it was saved with.
+     * @throws IOException if the file cannot be read or is not a snapshot.
+     */
+    public static BST load( Path objPath ) throws IOException
+    {
+        BSTIndex objIndex = BSTIndex.open( objPath );
+        BST objTree = new BST( objIndex.getK_VALUE() );
+        int[] nKeys = objIndex.toSortedArray();
+        objTree.m_objRootNode = Build( nKeys, 0, nKeys.length - 1 );
+        return( objTree );
+    }
+    
     /* OTHER METHODS */
     
     public boolean IsEmpty()
@@ -407,25 +872,28 @@ public class BST
     @Override
     public String toString()
     {
-        StringBuffer buffer = new StringBuffer();
-        report(m_objRootNode, buffer);
+        StringBuilder buffer = new StringBuilder();
+        report(m_objRootNode, 0, buffer);
         return buffer.toString();
     }
     
-    private void report(BSTNode node, StringBuffer buffer)
+    /* the rank is derived from the subtree sizes, as it is not stored in
+       persistent mode; nOffset is the number of keys left of this subtree */
+    private void report(BSTNode node, int nOffset, StringBuilder buffer)
     {
         if(node == null)
         {
             return; 
         }
         
-        report(node.GetLeftNode(), buffer);
+        report(node.GetLeftNode(), nOffset, buffer);
         
-        String current = "node("+node.GetKeyValue()+") is ranked #"+node.GetRank()+
-                ", and has size "+node.GetTreeSize()+".\n";
-        buffer.append(current);
+        int nRank = nOffset + Size(node.GetLeftNode());
+        buffer.append("node(").append(node.GetKeyValue()).append(") is ranked #")
+              .append(nRank).append(", and has size ").append(node.GetTreeSize())
+              .append(".\n");
         
-        report(node.GetRightNode(), buffer);
+        report(node.GetRightNode(), nRank + 1, buffer);
     }
     
 }
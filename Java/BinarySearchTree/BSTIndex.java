@@ -0,0 +1,273 @@
+/**
+ * BSTIndex.java
+ * An instance of this class is a read-only, memory-mapped view of a BST
+ * snapshot written by BST.save(). Opening an index only maps the file, so even
+ * a multi-million-key index is ready in milliseconds, and queries run directly
+ * against the mapped keys without building any nodes.
+ * <p>
+ * The snapshot format is a 16-byte header followed by the keys, all as
+ * little-endian 32-bit ints:
+ *   magic ("BST1"), format version, k-value, number of keys n, keys[n].
+ * The keys are stored in Eytzinger (BFS) order: the implicit complete binary
+ * search tree with the root at position 1 and the children of position i at
+ * 2i and 2i+1. A search therefore reads the top levels from the same few pages
+ * on every query, and each step computes its next position without a branch.
+ * Dependencies: BST.java
+ */
+
+package binarysearchtree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public final class BSTIndex
+{
+    private static final int MAGIC = 0x31545342; // "BST1" in little-endian
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    // number of keys written per buffer when saving
+    private static final int WRITE_CHUNK = 1 << 14;
+
+    /* the keys in Eytzinger order, position i of the tree is index i-1 */
+    private final IntBuffer m_objKeys;
+    private final int m_nCount;
+    private final int K_VALUE;
+
+    private BSTIndex( IntBuffer objKeys, int nCount, int k )
+    {
+        m_objKeys = objKeys;
+        m_nCount = nCount;
+        K_VALUE = k;
+    }
+
+    /**
+     * This method maps a snapshot file written by BST.save().
+     * @param objPath, the snapshot file.
+     * @return the index.
+     * @throws IOException if the file cannot be read or is not a snapshot.
+     */
+    public static BSTIndex open( Path objPath ) throws IOException
+    {
+        try( FileChannel objChannel = FileChannel.open( objPath, StandardOpenOption.READ ) )
+        {
+            long lSize = objChannel.size();
+            if( lSize < HEADER_BYTES )
+            {
+                throw new IOException( objPath + " is not a BST snapshot" );
+            }
+            // the mapping stays valid after the channel is closed
+            ByteBuffer objMap = objChannel.map( FileChannel.MapMode.READ_ONLY, 0, lSize )
+                .order( ByteOrder.LITTLE_ENDIAN );
+            int nMagic = objMap.getInt( 0 );
+            int nVersion = objMap.getInt( 4 );
+            int k = objMap.getInt( 8 );
+            int nCount = objMap.getInt( 12 );
+            if( nMagic != MAGIC || nVersion != VERSION || nCount < 0
+                || lSize != HEADER_BYTES + 4L * nCount )
+            {
+                throw new IOException( objPath + " is not a BST snapshot" );
+            }
+            objMap.position( HEADER_BYTES );
+            IntBuffer objKeys = objMap.slice().order( ByteOrder.LITTLE_ENDIAN ).asIntBuffer();
+            return( new BSTIndex( objKeys, nCount, k ) );
+        }
+    }
+
+    /**
+     * This method writes a snapshot file with NIO.
+     * @param objPath, the file to write, replaced if it exists.
+     * @param nSortedKeys, the distinct key values in ascending order.
+     * @param k, the k-value of the tree.
+     * @throws IOException if the file cannot be written.
+     */
+    static void Write( Path objPath, int[] nSortedKeys, int k ) throws IOException
+    {
+        int nCount = nSortedKeys.length;
+        int[] nKeys = new int[nCount];
+        Eytzinger( nSortedKeys, nKeys, 1, 0 );
+
+        try( FileChannel objChannel = FileChannel.open( objPath, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING ) )
+        {
+            ByteBuffer objBuffer = ByteBuffer.allocateDirect( 4 * WRITE_CHUNK )
+                .order( ByteOrder.LITTLE_ENDIAN );
+            objBuffer.putInt( MAGIC ).putInt( VERSION ).putInt( k ).putInt( nCount );
+            WriteFully( objChannel, objBuffer );
+            for( int i = 0; i < nCount; i += WRITE_CHUNK )
+            {
+                int nChunk = Math.min( WRITE_CHUNK, nCount - i );
+                objBuffer.asIntBuffer().put( nKeys, i, nChunk );
+                objBuffer.position( 4 * nChunk );
+                WriteFully( objChannel, objBuffer );
+            }
+        }
+    }
+
+    private static void WriteFully( FileChannel objChannel, ByteBuffer objBuffer ) throws IOException
+    {
+        objBuffer.flip();
+        while( objBuffer.hasRemaining() )
+        {
+            objChannel.write( objBuffer );
+        }
+        objBuffer.clear();
+    }
+
+    /**
+     * This recursive method lays out sorted keys in Eytzinger order by an
+     * in-order walk of the implicit tree.
+     * @param nSortedKeys, the keys in ascending order.
+     * @param nKeys, the keys in Eytzinger order.
+     * @param nPosition, the current position in the implicit tree.
+     * @param nIndex, the index of the next sorted key to place.
+     * @return the index of the next sorted key to place.
+     */
+    private static int Eytzinger( int[] nSortedKeys, int[] nKeys, int nPosition, int nIndex )
+    {
+        if( nPosition > nKeys.length )
+        {
+            return( nIndex );
+        }
+        nIndex = Eytzinger( nSortedKeys, nKeys, 2 * nPosition, nIndex );
+        nKeys[nPosition - 1] = nSortedKeys[nIndex++];
+        return( Eytzinger( nSortedKeys, nKeys, 2 * nPosition + 1, nIndex ) );
+    }
+
+    /* METHODS FOR SEARCH */
+
+    /**
+     * This method finds the position of the smallest key value greater than or
+     * equal to a specified key value. Every step moves to a child without a
+     * branch; the answer is the last position where the walk went left, which
+     * is recovered from the trailing one-bits of the final position.
+     * @param nKeyValue, the key value queried.
+     * @return the position (1-based), or 0 if every key value is smaller.
+     */
+    private int LowerBound( int nKeyValue )
+    {
+        int i = 1;
+        while( i <= m_nCount )
+        {
+            i = 2 * i + ( m_objKeys.get( i - 1 ) < nKeyValue ? 1 : 0 );
+        }
+        return( i >>> ( Integer.numberOfTrailingZeros( ~i ) + 1 ) );
+    }
+
+    /**
+     * This method finds the position of the largest key value less than or
+     * equal to a specified key value.
+     * @param nKeyValue, the key value queried.
+     * @return the position (1-based), or 0 if every key value is greater.
+     */
+    private int Floor( int nKeyValue )
+    {
+        int i = 1, nFloor = 0;
+        while( i <= m_nCount )
+        {
+            if( m_objKeys.get( i - 1 ) <= nKeyValue )
+            {
+                nFloor = i;
+                i = 2 * i + 1;
+            }
+            else
+            {
+                i = 2 * i;
+            }
+        }
+        return( nFloor );
+    }
+
+    /**
+     * This method searches for a specified key value within this index.
+     * @param nKeyValue, the key value queried.
+     * @return true if the key value is contained within the index.
+     */
+    public boolean contains( int nKeyValue )
+    {
+        int i = LowerBound( nKeyValue );
+        return( i != 0 && m_objKeys.get( i - 1 ) == nKeyValue );
+    }
+
+    /**
+     * This method finds the key value closest to a specified key value. Ties
+     * go to the smaller key value, as in BST.nearest().
+     * @param nKeyValue, the key value queried.
+     * @return the nearest key value, or null if the index is empty.
+     */
+    public Integer nearest( int nKeyValue )
+    {
+        int nFloor = Floor( nKeyValue );
+        int nCeiling = LowerBound( nKeyValue );
+        if( nFloor == 0 )
+        {
+            return( nCeiling == 0 ? null : m_objKeys.get( nCeiling - 1 ) );
+        }
+        int nBelow = m_objKeys.get( nFloor - 1 );
+        if( nCeiling == 0 )
+        {
+            return( nBelow );
+        }
+        int nAbove = m_objKeys.get( nCeiling - 1 );
+        return( (long) nAbove - nKeyValue < (long) nKeyValue - nBelow ? nAbove : nBelow );
+    }
+
+    /**
+     * This method checks whether any key value in the index is less than k
+     * away from a specified key value, as in BST.withinDistance().
+     * @param nKeyValue, the key value queried.
+     * @param k, the distance.
+     * @return true if the predecessor or successor is within distance k.
+     */
+    public boolean withinDistance( int nKeyValue, int k )
+    {
+        int nFloor = Floor( nKeyValue );
+        if( nFloor != 0 && (long) nKeyValue - m_objKeys.get( nFloor - 1 ) < k )
+        {
+            return( true );
+        }
+        int nCeiling = LowerBound( nKeyValue );
+        return( nCeiling != 0 && (long) m_objKeys.get( nCeiling - 1 ) - nKeyValue < k );
+    }
+
+    /* OTHER METHODS */
+
+    public int size()
+    {
+        return( m_nCount );
+    }
+
+    public int getK_VALUE()
+    {
+        return( K_VALUE );
+    }
+
+    /**
+     * This method reads the key values back out of Eytzinger order.
+     * @return the key values in ascending order.
+     */
+    public int[] toSortedArray()
+    {
+        int[] nKeys = new int[m_nCount];
+        int[] nEytzinger = new int[m_nCount];
+        // one bulk read from the mapping, then an in-order walk in memory
+        m_objKeys.duplicate().get( nEytzinger );
+        InOrder( nEytzinger, nKeys, 1, 0 );
+        return( nKeys );
+    }
+
+    private static int InOrder( int[] nEytzinger, int[] nKeys, int nPosition, int nIndex )
+    {
+        if( nPosition > nEytzinger.length )
+        {
+            return( nIndex );
+        }
+        nIndex = InOrder( nEytzinger, nKeys, 2 * nPosition, nIndex );
+        nKeys[nIndex++] = nEytzinger[nPosition - 1];
+        return( InOrder( nEytzinger, nKeys, 2 * nPosition + 1, nIndex ) );
+    }
+}
@@ -27,6 +27,21 @@ public final class BSTNode
                 SetTreeSize();
         }
 
+        /**
+         * This method copies this node for a persistent tree. The copy shares
+         * both sub-trees with this node.
+         * @return the new node.
+         */
+        protected BSTNode Copy()
+        {
+                BSTNode objCopy = new BSTNode( m_nKeyValue );
+                objCopy.m_objLeftNode = m_objLeftNode;
+                objCopy.m_objRightNode = m_objRightNode;
+                objCopy.m_nTreeSize = m_nTreeSize;
+                objCopy.m_nRank = m_nRank;
+                return( objCopy );
+        }
+
         /**
          * Method to set the left node of this node and update its size.
          * @param objLeftNode, the root of the sub-tree connecting to the left of 
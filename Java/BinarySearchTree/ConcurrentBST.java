@@ -0,0 +1,227 @@
+/**
+ * ConcurrentBST.java
+ * This class contains a thread-safe ordered set of int keys backed by an
+ * external (leaf-oriented) binary search tree. Keys are only stored in the
+ * leaves, while internal nodes route the search, so an insert or delete only
+ * ever changes a single child reference of one internal node.
+ * <p>
+ * Searches take no locks at all. Updates use optimistic fine-grained locking:
+ * the search path is read without locks, then only the parent (insert) or the
+ * grandparent and parent (delete) of the target leaf are locked, top-down, and
+ * validated before the change is made. A spliced-out internal node is marked
+ * and never modified again, so a search that is still passing through it ends
+ * at a leaf that was in the set at some point during the search. Insert,
+ * Delete and Contains are therefore linearizable.
+ * Dependencies: None
+ */
+
+package binarysearchtree;
+
+public class ConcurrentBST
+{
+    /* sentinel keys, larger than any int key, that keep the root non-empty */
+    private static final long INFINITY_1 = Long.MAX_VALUE - 1;
+    private static final long INFINITY_2 = Long.MAX_VALUE;
+
+    /* the root of this tree, an internal node that is never removed */
+    private final Node m_objRootNode;
+
+    /**
+     * Constructor
+     * Each tree is initialized as an empty set, i.e. a root routing node with
+     * the two sentinel leaves.
+     */
+    public ConcurrentBST()
+    {
+        m_objRootNode = new Node(INFINITY_2, new Node(INFINITY_1), new Node(INFINITY_2));
+    }
+
+    /* METHODS FOR INSERTION/DELETION/SEARCH */
+
+    /**
+     * This method searches for a specified key value within this tree without
+     * taking any locks.
+     * @param nKeyValue, the key value queried.
+     * @return true if the key value is contained within the tree.
+     */
+    public boolean Contains( int nKeyValue )
+    {
+        Node objNode = m_objRootNode;
+        // walk down the routing nodes until a leaf is reached
+        while( !objNode.IsLeaf() )
+        {
+            objNode = objNode.GetChild( nKeyValue );
+        }
+        return( objNode.m_lKeyValue == nKeyValue );
+    }
+
+    /**
+     * This method inserts a key value into the tree, unless it is already
+     * contained within the tree. The leaf found by the search is replaced by a
+     * new routing node whose children are the old leaf and the new leaf.
+     * @param nKeyValue, the key value of the new leaf.
+     * @return true if the key value was inserted, false if already present.
+     */
+    public boolean insert( int nKeyValue )
+    {
+        while( true )
+        {
+            Node objParent = m_objRootNode;
+            Node objLeaf = objParent.GetChild( nKeyValue );
+            while( !objLeaf.IsLeaf() )
+            {
+                objParent = objLeaf;
+                objLeaf = objLeaf.GetChild( nKeyValue );
+            }
+
+            // if the key is already here, there is nothing to insert
+            if( objLeaf.m_lKeyValue == nKeyValue )
+            {
+                return( false );
+            }
+
+            // build the replacement subtree before taking the lock
+            Node objNewLeaf = new Node( nKeyValue );
+            Node objReplacement = ( nKeyValue < objLeaf.m_lKeyValue )
+                ? new Node( objLeaf.m_lKeyValue, objNewLeaf, objLeaf )
+                : new Node( nKeyValue, objLeaf, objNewLeaf );
+
+            synchronized( objParent )
+            {
+                // the parent must still be in the tree and still point at the
+                // leaf, otherwise another update got here first and we retry
+                if( !objParent.m_bMarked && objParent.GetChild( nKeyValue ) == objLeaf )
+                {
+                    objParent.SetChild( nKeyValue, objReplacement );
+                    return( true );
+                }
+            }
+        }
+    }
+
+    /**
+     * This method deletes a key value from the tree. The leaf holding the key
+     * and its parent are spliced out by pointing the grandparent at the leaf's
+     * sibling.
+     * @param nKeyValue, the key value of the leaf that is to be deleted.
+     * @return true if the key value was deleted, false if it was not present.
+     */
+    public boolean Delete( int nKeyValue )
+    {
+        while( true )
+        {
+            Node objGrandParent = null;
+            Node objParent = m_objRootNode;
+            Node objLeaf = objParent.GetChild( nKeyValue );
+            while( !objLeaf.IsLeaf() )
+            {
+                objGrandParent = objParent;
+                objParent = objLeaf;
+                objLeaf = objLeaf.GetChild( nKeyValue );
+            }
+
+            // if the key is not here (this also covers the sentinels, which
+            // are the only leaves without a grandparent), there is nothing to do
+            if( objLeaf.m_lKeyValue != nKeyValue )
+            {
+                return( false );
+            }
+
+            // locks are always taken top-down, so deletions cannot deadlock
+            synchronized( objGrandParent )
+            {
+                synchronized( objParent )
+                {
+                    if( !objGrandParent.m_bMarked && !objParent.m_bMarked
+                        && objGrandParent.GetChild( nKeyValue ) == objParent
+                        && objParent.GetChild( nKeyValue ) == objLeaf )
+                    {
+                        Node objSibling = ( objParent.m_objLeftNode == objLeaf )
+                            ? objParent.m_objRightNode : objParent.m_objLeftNode;
+                        // the parent is frozen from here on, so concurrent
+                        // inserts below it fail validation and retry
+                        objParent.m_bMarked = true;
+                        objGrandParent.SetChild( nKeyValue, objSibling );
+                        return( true );
+                    }
+                }
+            }
+        }
+    }
+
+    /* OTHER METHODS */
+
+    public boolean IsEmpty()
+    {
+        // only the sentinel leaves remain when the left subtree of the root
+        // is the first sentinel leaf
+        Node objNode = m_objRootNode.m_objLeftNode;
+        return( objNode.IsLeaf() && objNode.m_lKeyValue == INFINITY_1 );
+    }
+
+    /**
+     * This method counts the keys in this tree. It is not atomic with respect
+     * to concurrent updates and is intended for reporting only.
+     * @return the number of keys in this tree.
+     */
+    public int Size()
+    {
+        // the two sentinel leaves are not keys
+        return( Size( m_objRootNode ) - 2 );
+    }
+
+    private int Size( Node objNode )
+    {
+        if( objNode.IsLeaf() )
+        {
+            return( 1 );
+        }
+        return( Size( objNode.m_objLeftNode ) + Size( objNode.m_objRightNode ) );
+    }
+
+    /* node structure used for both routing (internal) nodes and leaves */
+    private static final class Node
+    {
+        final long m_lKeyValue;
+        volatile Node m_objLeftNode, m_objRightNode;
+        // set once the node has been spliced out of the tree; guarded by the
+        // node's monitor, so it is only read under the lock
+        boolean m_bMarked;
+
+        /* leaf constructor */
+        Node( long lKeyValue )
+        {
+            m_lKeyValue = lKeyValue;
+        }
+
+        /* routing node constructor; keys smaller than lKeyValue go left */
+        Node( long lKeyValue, Node objLeftNode, Node objRightNode )
+        {
+            m_lKeyValue = lKeyValue;
+            m_objLeftNode = objLeftNode;
+            m_objRightNode = objRightNode;
+        }
+
+        boolean IsLeaf()
+        {
+            return( m_objLeftNode == null );
+        }
+
+        Node GetChild( long lKeyValue )
+        {
+            return( lKeyValue < m_lKeyValue ? m_objLeftNode : m_objRightNode );
+        }
+
+        void SetChild( long lKeyValue, Node objNode )
+        {
+            if( lKeyValue < m_lKeyValue )
+            {
+                m_objLeftNode = objNode;
+            }
+            else
+            {
+                m_objRightNode = objNode;
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * ConcurrentBSTBenchmark.java
+ * This program measures the throughput of ConcurrentBST against the JDK's
+ * ConcurrentSkipListSet under a mixed insert/delete/contains workload, for an
+ * increasing number of threads. Each thread draws uniformly random keys from a
+ * fixed range, so the set stays at roughly half the range once warmed up.
+ * Usage: ConcurrentBSTBenchmark [max threads] [key range] [% updates]
+ * Dependencies: ConcurrentBST.java
+ */
+
+package binarysearchtree;
+
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConcurrentBSTBenchmark
+{
+    // length of the warm-up and of each measured run, in milliseconds
+    private static final long WARMUP_MILLIS = 2000;
+    private static final long RUN_MILLIS = 3000;
+
+    /* the operations exercised by the benchmark, for either implementation */
+    private interface IntSet
+    {
+        boolean insert( int nKeyValue );
+        boolean Delete( int nKeyValue );
+        boolean Contains( int nKeyValue );
+    }
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        int nMaxThreads = ( args.length > 0 ) ? Integer.parseInt( args[0] )
+            : Runtime.getRuntime().availableProcessors();
+        int nKeyRange = ( args.length > 1 ) ? Integer.parseInt( args[1] ) : 1 << 20;
+        int nUpdatePercent = ( args.length > 2 ) ? Integer.parseInt( args[2] ) : 20;
+
+        System.out.println("key range " + nKeyRange + ", " + nUpdatePercent + "% updates");
+        System.out.println("threads\tConcurrentBST (ops/s)\tConcurrentSkipListSet (ops/s)");
+
+        for( int nThreads = 1; nThreads <= nMaxThreads; nThreads *= 2 )
+        {
+            final ConcurrentBST objTree = new ConcurrentBST();
+            IntSet objTreeSet = new IntSet()
+            {
+                public boolean insert( int n ) { return objTree.insert( n ); }
+                public boolean Delete( int n ) { return objTree.Delete( n ); }
+                public boolean Contains( int n ) { return objTree.Contains( n ); }
+            };
+            final ConcurrentSkipListSet<Integer> objSkipList = new ConcurrentSkipListSet<>();
+            IntSet objSkipListSet = new IntSet()
+            {
+                public boolean insert( int n ) { return objSkipList.add( n ); }
+                public boolean Delete( int n ) { return objSkipList.remove( n ); }
+                public boolean Contains( int n ) { return objSkipList.contains( n ); }
+            };
+
+            prefill( objTreeSet, nKeyRange );
+            prefill( objSkipListSet, nKeyRange );
+            run( objTreeSet, nThreads, nKeyRange, nUpdatePercent, WARMUP_MILLIS );
+            run( objSkipListSet, nThreads, nKeyRange, nUpdatePercent, WARMUP_MILLIS );
+
+            long lTreeOps = run( objTreeSet, nThreads, nKeyRange, nUpdatePercent, RUN_MILLIS );
+            long lSkipListOps = run( objSkipListSet, nThreads, nKeyRange, nUpdatePercent, RUN_MILLIS );
+
+            System.out.println(nThreads + "\t" + ( lTreeOps * 1000 / RUN_MILLIS ) + "\t\t\t"
+                + ( lSkipListOps * 1000 / RUN_MILLIS ));
+        }
+    }
+
+    /**
+     * This method fills the set with random keys from the range until it holds
+     * roughly the steady-state number of keys.
+     * @param objSet, the set under test.
+     * @param nKeyRange, the exclusive upper bound of the keys.
+     */
+    private static void prefill( IntSet objSet, int nKeyRange )
+    {
+        for( int i = 0; i < nKeyRange / 2; i++ )
+        {
+            objSet.insert( ThreadLocalRandom.current().nextInt( nKeyRange ) );
+        }
+    }
+
+    /**
+     * This method runs the mixed workload on the given number of threads for
+     * a fixed duration.
+     * @param objSet, the set under test.
+     * @param nThreads, the number of worker threads.
+     * @param nKeyRange, the exclusive upper bound of the keys.
+     * @param nUpdatePercent, the share of operations that are updates, split
+     * evenly between inserts and deletes.
+     * @param lMillis, the duration of the run.
+     * @return the total number of operations completed by all threads.
+     */
+    private static long run( final IntSet objSet, int nThreads, final int nKeyRange,
+        final int nUpdatePercent, long lMillis ) throws InterruptedException
+    {
+        final LongAdder objOps = new LongAdder();
+        final CountDownLatch objStart = new CountDownLatch( 1 );
+        final AtomicBoolean bStop = new AtomicBoolean( false );
+        Thread[] objThreads = new Thread[nThreads];
+
+        for( int t = 0; t < nThreads; t++ )
+        {
+            objThreads[t] = new Thread( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    ThreadLocalRandom objRandom = ThreadLocalRandom.current();
+                    long lOps = 0;
+                    try
+                    {
+                        objStart.await();
+                    }
+                    catch( InterruptedException e )
+                    {
+                        return;
+                    }
+                    while( !bStop.get() )
+                    {
+                        int nKey = objRandom.nextInt( nKeyRange );
+                        int nOp = objRandom.nextInt( 100 );
+                        if( nOp < nUpdatePercent / 2 )
+                        {
+                            objSet.insert( nKey );
+                        }
+                        else if( nOp < nUpdatePercent )
+                        {
+                            objSet.Delete( nKey );
+                        }
+                        else
+                        {
+                            objSet.Contains( nKey );
+                        }
+                        lOps++;
+                    }
+                    objOps.add( lOps );
+                }
+            });
+            objThreads[t].start();
+        }
+
+        objStart.countDown();
+        Thread.sleep( lMillis );
+        bStop.set( true );
+        for( Thread objThread : objThreads )
+        {
+            objThread.join();
+        }
+        return( objOps.sum() );
+    }
+}
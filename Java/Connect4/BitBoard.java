@@ -0,0 +1,236 @@
+/**
+  * BitBoard.java
+  * This class is a compact representation of the board used by the search.
+  * Each side's pieces are kept in one long, and a move or unmove only sets or
+  * clears a single bit, so the search can play moves in place.
+  * <p>
+  * The bits are laid out column by column, from the bottom up, with one
+  * spare (always empty) bit on top of each column. On the standard board:
+  *
+  *   6 13 20 27 34 41 48
+  *   5 12 19 26 33 40 47
+  *   4 11 18 25 32 39 46
+  *   3 10 17 24 31 38 45
+  *   2  9 16 23 30 37 44
+  *   1  8 15 22 29 36 43
+  *   0  7 14 21 28 35 42
+  *
+  * Shifting by 1, 7, 6 or 8 moves every piece one step along a column, row,
+  * or diagonal, and the spare bits keep a line from wrapping into the next
+  * column. Finding four in a row is then two shift-and-ANDs per direction.
+  * <p>
+  * A board of another Geometry is laid out the same way, without the spare
+  * bits if the board is too large to have them; the Geometry then keeps
+  * lines from wrapping with masks of the squares a line can start on.
+  * <p>
+  * The board also keeps a Zobrist key of the position, the XOR of a random
+  * number for every (side, square) that holds a piece, updated with one XOR
+  * per move. The transposition table uses it to identify positions. The key
+  * of the mirror image of the position, its columns swapped left for right,
+  * is kept alongside: a position and its mirror image have the same value,
+  * so caches of exact scores can store both under one canonical key.
+  * Dependencies: Connect4.java, Geometry.java
+  */
+
+package connect4;
+
+public class BitBoard
+{
+	// The dimensions of the standard board, and the height of a column
+	//   including the spare bit. The Solver, which only plays the standard
+	//   board, relies on them.
+	static final int WIDTH = 7;
+	static final int HEIGHT = 6;
+	static final int H1 = HEIGHT + 1;
+
+	// The shifts that step along a column, a row, and both diagonals.
+	static final int[] DIRECTIONS = { 1, H1, H1 - 1, H1 + 1 };
+
+	// Masks of the cells of a single column, indexed by column.
+	static final long[] COLUMN_MASK = Geometry.STANDARD.m_lColumnMasks;
+
+	// The geometry of the board, and its masks and Zobrist numbers.
+	Geometry m_objGeometry;
+	// The pieces of each side, indexed by Connect4.RED and Connect4.YELLOW.
+	long[] m_lPieces = new long[2];
+	// The number of pieces in each column.
+	int[] m_nHeights;
+	// The number of pieces on the board.
+	int m_nMoveCount;
+	// The Zobrist key of the pieces on the board, and of their mirror image.
+	long m_lHash;
+	long m_lMirrorHash;
+
+	// Create an empty standard board.
+	public BitBoard()
+	{
+		this( Geometry.STANDARD );
+	}
+
+	// Create an empty board of a geometry.
+	public BitBoard( Geometry objGeometry )
+	{
+		m_objGeometry = objGeometry;
+		m_nHeights = new int[objGeometry.m_nCols];
+		Clear();
+	}
+
+	// Get the geometry of the board.
+	public Geometry GetGeometry()
+	{
+		return( m_objGeometry );
+	}
+
+	// Clear the board to all empty.
+	public void Clear()
+	{
+		m_lPieces[0] = 0;
+		m_lPieces[1] = 0;
+		for( int col=0; col<m_nHeights.length; col++ )
+		{
+			m_nHeights[col] = 0;
+		}
+		m_nMoveCount = 0;
+		m_lHash = 0;
+		m_lMirrorHash = 0;
+	}
+
+	// Copy the board, for callers that need to keep a position around.
+	public BitBoard Clone()
+	{
+		BitBoard Ret = new BitBoard( m_objGeometry );
+		Ret.m_lPieces[0] = m_lPieces[0];
+		Ret.m_lPieces[1] = m_lPieces[1];
+		System.arraycopy( m_nHeights, 0, Ret.m_nHeights, 0, m_nHeights.length );
+		Ret.m_nMoveCount = m_nMoveCount;
+		Ret.m_lHash = m_lHash;
+		Ret.m_lMirrorHash = m_lMirrorHash;
+		return( Ret );
+	}
+
+	// Set the board from a rows x columns array. The pieces are expected to
+	//   be stacked from the bottom of each column, as they are in play.
+	public void SetBoardData( int[][] data )
+	{
+		Clear();
+		for( int col=0; col<m_objGeometry.m_nCols; col++ )
+		{
+			for( int row=m_objGeometry.m_nRows-1; row>=0; row-- )
+			{
+				int nPiece = data[row][col];
+				if( nPiece == Connect4.EMPTY )
+				{
+					break;
+				}
+				MakeMove( col, nPiece );
+			}
+		}
+	}
+
+	// Get the board as a rows x columns array, e.g. for display.
+	public int[][] GetBoardData()
+	{
+		int[][] data = new int[m_objGeometry.m_nRows][m_objGeometry.m_nCols];
+		for( int row=0; row<m_objGeometry.m_nRows; row++ )
+		{
+			for( int col=0; col<m_objGeometry.m_nCols; col++ )
+			{
+				long lBit = m_objGeometry.Bit( row, col );
+				data[row][col] = ( m_lPieces[Connect4.RED] & lBit ) != 0 ? Connect4.RED
+					: ( m_lPieces[Connect4.YELLOW] & lBit ) != 0 ? Connect4.YELLOW
+					: Connect4.EMPTY;
+			}
+		}
+		return( data );
+	}
+
+	// See if a piece can be dropped into a column.
+	public boolean CanPlay( int col )
+	{
+		return( m_nHeights[col] < m_objGeometry.m_nRows );
+	}
+
+	// Get the number of pieces in a column. The next piece dropped into the
+	//   column lands in row (rows - 1 - GetHeight(col)).
+	public int GetHeight( int col )
+	{
+		return( m_nHeights[col] );
+	}
+
+	// Drop a piece into a column. The column must not be full.
+	public void MakeMove( int col, int nPiece )
+	{
+		int nHeight = m_nHeights[col]++;
+		int nBit = col * m_objGeometry.m_nColumnBits + nHeight;
+		m_lPieces[nPiece] |= 1L << nBit;
+		m_lHash ^= m_objGeometry.m_lZobrist[nPiece][nBit];
+		m_lMirrorHash ^= m_objGeometry.m_lZobrist[nPiece][MirrorBit( col, nHeight )];
+		m_nMoveCount++;
+	}
+
+	// Take back the top piece of a column.
+	public void UnmakeMove( int col )
+	{
+		int nHeight = --m_nHeights[col];
+		int nBit = col * m_objGeometry.m_nColumnBits + nHeight;
+		int nPiece = ( m_lPieces[Connect4.YELLOW] >>> nBit & 1 ) != 0 ? Connect4.YELLOW : Connect4.RED;
+		m_lPieces[nPiece] &= ~( 1L << nBit );
+		m_lHash ^= m_objGeometry.m_lZobrist[nPiece][nBit];
+		m_lMirrorHash ^= m_objGeometry.m_lZobrist[nPiece][MirrorBit( col, nHeight )];
+		m_nMoveCount--;
+	}
+
+	// Get the Zobrist key of the position with a given side to move.
+	public long GetHash( int nPieceToMove )
+	{
+		return( nPieceToMove == Connect4.YELLOW ? m_lHash ^ m_objGeometry.m_lZobristYellowToMove : m_lHash );
+	}
+
+	// Get the key of the position or of its mirror image, whichever is
+	//   smaller, with a given side to move: the same key for both.
+	public long GetCanonicalHash( int nPieceToMove )
+	{
+		long lHash = Math.min( m_lHash, m_lMirrorHash );
+		return( nPieceToMove == Connect4.YELLOW ? lHash ^ m_objGeometry.m_lZobristYellowToMove : lHash );
+	}
+
+	// See if GetCanonicalHash() is the key of the mirror image, so that a
+	//   move stored under it is a move of the mirror image (see Mirror()).
+	public boolean IsMirrored()
+	{
+		return( m_lMirrorHash < m_lHash );
+	}
+
+	// Get the column that mirrors a column.
+	public int Mirror( int col )
+	{
+		return( m_objGeometry.m_nCols - 1 - col );
+	}
+
+	// Get the bit of the square that mirrors a square of a column.
+	int MirrorBit( int col, int nHeight )
+	{
+		return( ( m_objGeometry.m_nCols - 1 - col ) * m_objGeometry.m_nColumnBits + nHeight );
+	}
+
+	// See if this is a Cats game (tied)
+	public boolean IsCatsGame()
+	{
+		return( m_nMoveCount == m_objGeometry.m_nSquares );
+	}
+
+	// See if a given side has won.
+	public boolean DidSideWin( int nSide )
+	{
+		return( m_objGeometry.HasConnect( m_lPieces[nSide] ) );
+	}
+
+	// Scores the board for a piece exactly like the array Board keeps its
+	//   score: runs of exactly two, three, ... k along the rows, the
+	//   columns and the diagonals of length k or more, plus the positional
+	//   advantage of the centre columns.
+	public int ScoreIt( int nPiece )
+	{
+		return( m_objGeometry.Score( m_lPieces[nPiece] ) );
+	}
+}
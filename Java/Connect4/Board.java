@@ -2,28 +2,63 @@
   * Board.java
   * This class contains on methods for maintaining the board object used 
   * in gameplay.
-  * Dependencies: Connect4.java
+  * <p>
+  * The board also keeps the evaluation (see Geometry) up to date for both
+  * sides as pieces are placed and removed, so the search can score a leaf in
+  * constant time. The score only depends on the runs of pieces along each
+  * line (row, column, or diagonal of length four or more), so each side's
+  * pieces on each line are kept as a small bit pattern, and a table gives the
+  * run score of every pattern. A square lies on at most four lines, so
+  * placing or removing a piece updates four patterns. The same patterns tell
+  * whether a side has four in a row.
+  * <p>
+  * The board is the standard 6x7 one unless it is created with another
+  * Geometry, whose lines and tables it then uses.
+  * Dependencies: Connect4.java, Geometry.java
   */
 
 package connect4;
 
+import java.util.Arrays;
+
 public class Board 
 {
-	// The board data is contained in a 6x7 integer array.
-	int[][] BoardData = new int[6][7];
-
-	// The constructor simply calls Clear()
+	// The geometry of the board, and its lines and pattern tables.
+	Geometry m_objGeometry;
+	// The board data is contained in a rows x columns integer array.
+	int[][] BoardData;
+	// Each side's pieces on each line, as patterns of bits.
+	int[][] m_nLines;
+	// The evaluation of each side.
+	int[] m_nScores = new int[2];
+
+	// The constructor for the standard board.
 	public Board()
 	{
+		this( Geometry.STANDARD );
+	}
+
+	// The constructor for a board of a geometry simply calls Clear()
+	public Board( Geometry objGeometry )
+	{
+		m_objGeometry = objGeometry;
+		BoardData = new int[objGeometry.m_nRows][objGeometry.m_nCols];
+		m_nLines = new int[2][objGeometry.m_nLines + 1];
 		Clear();
 	}
 
+	// Get the geometry of the board.
+	public Geometry GetGeometry()
+	{
+		return( m_objGeometry );
+	}
+
 	// This method is necessary for the minimax algorithm. It would
 	//   have been cleaner if java provided an = operator.
 	public Board Clone()
 	{
 		// Create a new board object.
-		Board Ret = new Board();
+		Board Ret = new Board( m_objGeometry );
 		// Set the board data in the newly-created object.
 		Ret.SetBoardData( BoardData );
 		// Return the newly-created class.
@@ -36,10 +71,10 @@ public class Board
 		return (BoardData[row][col] == Connect4.EMPTY);
 	}
 
-	// See if the square at a position (sq) is empty.
+	// See if the square at a position (sq = row * columns + col) is empty.
 	public boolean IsSquareEmpty(int sq)
 	{
-		return (IsSquareEmpty(sq/6,sq%7));
+		return (IsSquareEmpty(sq / m_objGeometry.m_nCols, sq % m_objGeometry.m_nCols));
 	}
 
 	// Get the board data for an external class to access.
@@ -48,16 +83,16 @@ public class Board
 		return (BoardData);
 	}
 
-	// Set the board data from a 6x7 array.
+	// Set the board data from a rows x columns array.
 	public void SetBoardData(int[][] data)
 	{
-		// Loop through six rows.
-		for (int row = 0; row <= 5; row++)
+		// Loop through the rows.
+		for (int row = 0; row < m_objGeometry.m_nRows; row++)
 		{
-			// Loop through seven columns.
-			for (int col = 0; col <= 6; col++)
+			// Loop through the columns.
+			for (int col = 0; col < m_objGeometry.m_nCols; col++)
 			{
-				BoardData[row][col] = data[row][col];
+				PlacePiece( row, col, data[row][col] );
 			}
 		}
 	}
@@ -65,21 +100,28 @@ public class Board
 	// Clear the board data to all empty.
 	public void Clear()
 	{
-		// Loop through six rows.
-		for( int row=0; row<=5; row++ )
+		// Loop through the rows.
+		for( int row=0; row<m_objGeometry.m_nRows; row++ )
 		{
-			// Loop through seven columns.
-			for( int col=0; col<=6; col++ )
+			// Loop through the columns.
+			for( int col=0; col<m_objGeometry.m_nCols; col++ )
 			{
 				BoardData[row][col] = Connect4.EMPTY;
 			}
 		}
+
+		// No pieces on any line.
+		for( int nSide=0; nSide<2; nSide++ )
+		{
+			Arrays.fill( m_nLines[nSide], 0 );
+			m_nScores[nSide] = 0;
+		}
 	}
 
-	// Place a piece in the board data array at sq.
+	// Place a piece in the board data array at sq (row * columns + col).
 	public void PlacePiece(int sq, int piece)
 	{
-		PlacePiece(sq / 6, sq % 7, piece);
+		PlacePiece(sq / m_objGeometry.m_nCols, sq % m_objGeometry.m_nCols, piece);
 	}
 
 	// Place a piece in the board data array at (row, col).
@@ -87,28 +129,74 @@ public class Board
 	{
 		// Check that we are in bounds.
 		if (row < 0 ||
-			row > 5 ||
+			row >= m_objGeometry.m_nRows ||
 			col < 0 ||
-			col > 6)
+			col >= m_objGeometry.m_nCols)
 		{
 			return;
 		}
 
+		// Take the piece that was here out of the score, and add the new one.
+		if( BoardData[row][col] != Connect4.EMPTY )
+		{
+			UpdateScore( row, col, BoardData[row][col], -1 );
+		}
+		if( piece != Connect4.EMPTY )
+		{
+			UpdateScore( row, col, piece, 1 );
+		}
+
 		// Place the data.
 		BoardData[row][col] = piece;
 	}
 
+	// Add (nSign 1) or remove (nSign -1) a piece in the patterns of the lines
+	//   through a square, and update the side's score by the change in the
+	//   run scores of those lines.
+	void UpdateScore( int row, int col, int piece, int nSign )
+	{
+		Geometry objGeometry = m_objGeometry;
+		int[] nSquareLines = objGeometry.m_nSquareLines;
+		int[] nSquareLineBits = objGeometry.m_nSquareLineBits;
+		int[] nRunScores = objGeometry.m_nRunScores;
+		int[] nLines = m_nLines[piece];
+		int nChange = 0;
+		int nSquare = row * objGeometry.m_nCols + col;
+		for( int nSlot=nSquare*4; nSlot<nSquare*4+4; nSlot++ )
+		{
+			int nLine = nSquareLines[nSlot];
+			int nPattern = nLines[nLine];
+			nChange -= nRunScores[nPattern];
+			nPattern ^= nSquareLineBits[nSlot];
+			nChange += nRunScores[nPattern];
+			nLines[nLine] = nPattern;
+		}
+		m_nScores[piece] += nChange + nSign * objGeometry.m_nColumnScores[col];
+	}
+
+	// Get the evaluation of a piece, as kept up to date by PlacePiece().
+	public int GetScore( int nPiece )
+	{
+		return( m_nScores[nPiece] );
+	}
+
+	// Take a piece off the board at (row, col), undoing PlacePiece().
+	public void RemovePiece( int row, int col )
+	{
+		PlacePiece( row, col, Connect4.EMPTY );
+	}
+
 	// See if this is a Cats game (tied)
 	public boolean IsCatsGame()
 	{
 		// Set the count to 0.
 		int nCount = 0;
 
-		// Loop through six rows.
-		for (int row = 0; row <= 5; row++)
+		// Loop through the rows.
+		for (int row = 0; row < m_objGeometry.m_nRows; row++)
 		{
-			// Loop through seven columns.
-			for (int col = 0; col <= 6; col++)
+			// Loop through the columns.
+			for (int col = 0; col < m_objGeometry.m_nCols; col++)
 			{
 				// If the data here is empty, increment the counter.
 				if (BoardData[row][col] == Connect4.EMPTY)
@@ -122,109 +210,20 @@ public class Board
 		return (nCount == 0);
 	}
 
-	// This data is for looking at diagonals.
-	//   The data is in sets of four: 
-  //   The first is the starting row. 
-  //   The second is the starting column. 
-  //   The third is the y direction. 
-  //   The fourth is the number of tests for this iteration.
-	public static int[] m_nDiagonalData =
-	{
-		3, 0, -1, 4,
-		4, 0, -1, 5,
-		5, 0, -1, 6,
-		5, 1, -1, 6,
-		5, 2, -1, 5,
-		5, 3, -1, 4,
-		
-		0, 3, 1, 4,
-		0, 2, 1, 5,
-		0, 1, 1, 6,
-		0, 0, 1, 6,
-		1, 0, 1, 5,
-		2, 0, 1, 4
-	};
-	
-	// See if a given side has won.
+	// See if a given side has won: whether the pattern of its pieces on any
+	//   line holds four (k) in a row.
 	public boolean DidSideWin( int nSide )
 	{
-		// Check rows...
-		for (int row = 0; row <= 5; row++)
-		{
-			for( int col=0; col<=7-4; col++ )
-			{
-				// See if the entire row == nSide.
-				if (BoardData[row][col] == nSide &&
-					BoardData[row][col+1] == nSide &&
-					BoardData[row][col+2] == nSide &&
-					BoardData[row][col+3] == nSide )
-				{
-					return (true);
-				}
-			}
-		}
-
-		// Check columns...
-		for (int col = 0; col <= 6; col++)
+		int[] nLines = m_nLines[nSide];
+		boolean[] bWins = m_objGeometry.m_bWins;
+		for( int nLine=0; nLine<m_objGeometry.m_nLines; nLine++ )
 		{
-			for( int row=0; row<=6-4; row++ )
+			if( bWins[nLines[nLine]] )
 			{
-				// See if the entire column == nSide.
-				if (BoardData[row][col] == nSide &&
-					BoardData[row+1][col] == nSide &&
-					BoardData[row+2][col] == nSide &&
-					BoardData[row+3][col] == nSide)
-				{
-					return (true);
-				}
-			}
-		}
-
-		// Loop through the diagonal data...
-		for( int nDiagonalTest=0; nDiagonalTest<m_nDiagonalData.length/4; nDiagonalTest++)
-		{
-			int nCount = 0;
-			// Starting row.
-			int nRow = m_nDiagonalData[nDiagonalTest*4];
-			// Starting column.
-			int nCol = m_nDiagonalData[nDiagonalTest*4+1];
-			// YDirection for the iterations.
-			int nYDir = m_nDiagonalData[nDiagonalTest*4+2];
-			// Number of iterations.
-			int nIterations = m_nDiagonalData[nDiagonalTest*4+3];
-
-			// Loop through the iterations.
-			for( int i=0; i<nIterations; i++ )
-			{
-				// If this is nSide then increment the counter.
-				if( BoardData[nRow][nCol] == nSide )
-				{
-					// Increment the counter.
-					nCount++;
-					
-					// If we got to 4 then this is a winner.
-					if( nCount >= 4 )
-					{
-						// Return true since this is a winner.
-						return( true );
-					}
-				}
-				// Otherwise, this square does not equal nSide.
-				else
-				{
-					// Reset the counter.
-					nCount = 0;
-				}
-				
-				// Move the row position.
-				nRow += nYDir;
-				// Move the column position.
-				nCol++;
+				return( true );
 			}
 		}
-		
-		// No sequence of four in a row matching nSide, so return false.
-		return (false);
+		return( false );
 	}
 	
 }
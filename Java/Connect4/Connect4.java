@@ -4,7 +4,7 @@
   * The computer's playing behavior is determined by Minimax, a decision rule that 
   * minimizes the opponent's maximum payoff (in a zero-sum game, this is the same as 
   * minimizing one's own maximum loss, and to maximizing one's own minimum gain).
-  * Dependencies: Board.java, Minimax.java, Position.java
+  * Dependencies: Board.java, Engine.java, Position.java
   */
 
 package connect4;
@@ -37,8 +37,8 @@ public class Connect4 extends Applet implements Runnable, ActionListener
 	// Board object. Contains the board and board logic.
 	Board m_objBoard = new Board();
 	
-	// The minimax class that finds the next move.
-	MiniMax m_objMiniMax = new MiniMax();
+	// The engine that finds the next move.
+	Engine m_objEngine = new Engine();
 	
 	// Button object and thread.
 	Button m_objButton = new Button("Start");
@@ -157,14 +157,9 @@ public class Connect4 extends Applet implements Runnable, ActionListener
 				// If the flag is true...
 				else if( m_bGetNextMove )
 				{
-					// Create a new Position object (which contains row and column)
-					Position pos = new Position();
-					
-					// Set the search piece to whatever side is now going to move.
-					m_objMiniMax.SetSearchPiece( m_nPiece );
-					
-					// Get the move from the minimax logic.
-					m_objMiniMax.GetMove( pos, m_objBoard.GetBoardData(), m_nPiece );
+					// Get the move (which contains row and column) for whatever
+					//   side is now going to move from the engine.
+					Position pos = m_objEngine.Analyse( m_objBoard.GetBoardData(), m_nPiece );
 					
 					// Place the piece in the board.
 					m_objBoard.PlacePiece( pos.Row, pos.Col, m_nPiece );
@@ -174,6 +169,13 @@ public class Connect4 extends Applet implements Runnable, ActionListener
 
 					// Change piece.
 					m_nPiece = ( m_nPiece == RED ? YELLOW : RED );
+
+					// Search the next position while it is shown: the engine
+					//   keeps what it finds for the next move.
+					if( !m_objBoard.IsCatsGame() && !m_objBoard.DidSideWin( RED ) && !m_objBoard.DidSideWin( YELLOW ) )
+					{
+						m_objEngine.StartPondering( m_objBoard.GetBoardData(), m_nPiece );
+					}
 				}
 			}
 		}
@@ -0,0 +1,350 @@
+/**
+  * Engine.java
+  * This class is the engine without the applet: given a position it returns
+  * the best move, its score and the principal variation. An Engine searches
+  * one position at a time; use one Engine per thread.
+  * <p>
+  * It is also a program that analyses a file of positions, one per line, as
+  * the columns (1-7, or 1-9 then a-f on wider boards) played from the empty
+  * board starting with RED. Blank
+  * lines and lines starting with '#' are skipped. The positions are searched
+  * in parallel, and a line of results is printed for each, in the order of
+  * the file:
+  * Usage: Engine [options] <positions file, or - for standard input>
+  *   -depth n    search n plies deep (default 7)
+  *   -time ms    search by iterative deepening for ms per position
+  *   -threads n  search each position with n threads (default 1)
+  *   -jobs n     search n positions at once (default: one per processor)
+  *   -book file  play from an opening book (see OpeningBook)
+  *   -solve      play perfectly with a Solver
+  *   -hash mb    share mb megabytes among the tables of the jobs (default
+  *               1024); with -solve, half of each job's share goes to its
+  *               solver table
+  *   -geometry g play on a board of rows x columns [x k], e.g. 7x8 or 6x9x5
+  *               (default 6x7); the book and the solver only play 6x7
+  * Each job keeps a search table of at most 16 MB, and a solver table of at
+  * most 64 MB with -solve: the largest powers of two that fit its share of
+  * -hash. Without -solve, the default budget leaves the search tables at
+  * full size for up to 64 jobs.
+  * Dependencies: MiniMax.java, BitBoard.java, Geometry.java, Position.java,
+  *   OpeningBook.java, Solver.java, SearchStats.java, Connect4.java
+  */
+
+package connect4;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class Engine
+{
+	// The result of analysing a position: the move (Row and Col, as for the
+	//   applet), its score for the side to move (see MiniMax.GetScore()), the
+	//   principal variation (columns) starting with the move, the depth
+	//   searched, and the nodes and time it took.
+	public static class Result extends Position
+	{
+		public int Score;
+		public boolean Exact;
+		public int[] PV;
+		public int Depth;
+		public long Nodes;
+		public long Millis;
+
+		// The result as text: the move, the score and the principal
+		//   variation as columns 1-9 (then a-f), then the depth, nodes and
+		//   time.
+		@Override
+		public String toString()
+		{
+			StringBuilder objText = new StringBuilder();
+			objText.append( Character.forDigit( Col + 1, 16 ) ).append( '\t' );
+			objText.append( Score == (int)Double.POSITIVE_INFINITY ? "win"
+				: Score == (int)Double.NEGATIVE_INFINITY ? "loss"
+				: Exact ? "=" + Score : Integer.toString( Score ) );
+			objText.append( '\t' );
+			for( int i=0; i<PV.length; i++ )
+			{
+				objText.append( Character.forDigit( PV[i] + 1, 16 ) );
+			}
+			objText.append( '\t' ).append( Depth );
+			objText.append( '\t' ).append( Nodes );
+			objText.append( '\t' ).append( Millis );
+			return( objText.toString() );
+		}
+	}
+
+	// The search.
+	MiniMax m_objMiniMax = new MiniMax();
+
+	// Search a number of plies deep.
+	public void SetDepth( int nDepth )
+	{
+		m_objMiniMax.m_nMaxPly = nDepth;
+	}
+
+	// Search by iterative deepening for up to lMillis per position, or 0 to
+	//   search to the depth.
+	public void SetTimeBudget( long lMillis )
+	{
+		m_objMiniMax.SetTimeBudget( lMillis );
+	}
+
+	// Search each position with a number of threads.
+	public void SetThreads( int nThreads )
+	{
+		m_objMiniMax.SetThreads( nThreads );
+	}
+
+	// Play from an opening book, or null for none.
+	public void SetOpeningBook( OpeningBook objBook )
+	{
+		m_objMiniMax.SetOpeningBook( objBook );
+	}
+
+	// Play perfectly with a solver, or null to search heuristically.
+	public void SetSolver( Solver objSolver )
+	{
+		m_objMiniMax.SetSolver( objSolver );
+	}
+
+	// Search with a transposition table of 2^nBits entries (16 bytes each).
+	public void SetTableBits( int nBits )
+	{
+		m_objMiniMax.SetTableBits( nBits );
+	}
+
+	// Play on a board of a geometry.
+	public void SetGeometry( Geometry objGeometry )
+	{
+		m_objMiniMax.SetGeometry( objGeometry );
+	}
+
+	// Keep the transposition table from position to position (true), as in
+	//   a game, or clear it before each, so the result of a position does
+	//   not depend on the positions searched before it.
+	public void SetKeepTable( boolean bKeepTable )
+	{
+		m_objMiniMax.SetKeepTable( bKeepTable );
+	}
+
+	// Search a position (as for Analyse()) in the background until the next
+	//   Analyse() or StopPondering(): the position expected next, as after
+	//   the opponent's reply.
+	public void StartPondering( int[][] BoardData, int nPiece )
+	{
+		m_objMiniMax.StartPondering( BoardData, nPiece );
+	}
+
+	// Stop searching in the background.
+	public void StopPondering()
+	{
+		m_objMiniMax.StopPondering();
+	}
+
+	// Analyse the position after a sequence of columns (1-9, then a-f)
+	//   played from the empty board, starting with RED.
+	public Result Analyse( String strMoves )
+	{
+		BitBoard brd = new BitBoard( m_objMiniMax.GetGeometry() );
+		int nPiece = Connect4.RED;
+		for( int i=0; i<strMoves.length(); i++ )
+		{
+			int nCol = Character.digit( strMoves.charAt( i ), 16 ) - 1;
+			if( nCol < 0 || nCol >= brd.m_objGeometry.m_nCols || !brd.CanPlay( nCol ) )
+			{
+				throw new IllegalArgumentException( "illegal move " + ( i + 1 ) + " in \"" + strMoves + "\"" );
+			}
+			brd.MakeMove( nCol, nPiece );
+			if( brd.DidSideWin( nPiece ) && i < strMoves.length() - 1 )
+			{
+				throw new IllegalArgumentException( "the game is over after move " + ( i + 1 ) + " in \"" + strMoves + "\"" );
+			}
+			nPiece ^= 1;
+		}
+		return( Analyse( brd.GetBoardData(), nPiece ) );
+	}
+
+	// Analyse a position of the board (as for Board.SetBoardData()) with
+	//   nPiece to move.
+	public Result Analyse( int[][] BoardData, int nPiece )
+	{
+		BitBoard brd = new BitBoard( m_objMiniMax.GetGeometry() );
+		brd.SetBoardData( BoardData );
+		if( brd.IsCatsGame() || brd.DidSideWin( Connect4.RED ) || brd.DidSideWin( Connect4.YELLOW ) )
+		{
+			throw new IllegalArgumentException( "the game is over" );
+		}
+
+		Result objResult = new Result();
+		long lStart = System.nanoTime();
+		m_objMiniMax.GetMove( objResult, BoardData, nPiece );
+		objResult.Millis = ( System.nanoTime() - lStart ) / 1000000;
+		objResult.Score = m_objMiniMax.GetScore();
+		objResult.Exact = m_objMiniMax.IsExactScore();
+		objResult.PV = m_objMiniMax.GetPrincipalVariation();
+		objResult.Depth = m_objMiniMax.GetCompletedDepth();
+		objResult.Nodes = m_objMiniMax.GetNodeCount();
+		return( objResult );
+	}
+
+	// The size of a table that fits lBytes: the largest power of two entries
+	//   (16 bytes each), from 2^10 up to 2^nMaxBits.
+	static int TableBits( long lBytes, int nMaxBits )
+	{
+		long lEntries = lBytes / 16;
+		int nBits = 10;
+		while( nBits < nMaxBits && ( 2L << nBits ) <= lEntries )
+		{
+			nBits++;
+		}
+		return( nBits );
+	}
+
+	public static void main( String[] args ) throws Exception
+	{
+		int nDepth = 7;
+		long lMillis = 0;
+		int nThreads = 1;
+		int nJobs = Runtime.getRuntime().availableProcessors();
+		String strBook = null;
+		boolean bSolve = false;
+		long lHashMB = 1024;
+		Geometry objGeometry = Geometry.STANDARD;
+		String strFile = null;
+		for( int i=0; i<args.length; i++ )
+		{
+			if( args[i].equals( "-depth" ) && i + 1 < args.length )
+			{
+				nDepth = Integer.parseInt( args[++i] );
+			}
+			else if( args[i].equals( "-time" ) && i + 1 < args.length )
+			{
+				lMillis = Long.parseLong( args[++i] );
+			}
+			else if( args[i].equals( "-threads" ) && i + 1 < args.length )
+			{
+				nThreads = Integer.parseInt( args[++i] );
+			}
+			else if( args[i].equals( "-jobs" ) && i + 1 < args.length )
+			{
+				nJobs = Integer.parseInt( args[++i] );
+			}
+			else if( args[i].equals( "-book" ) && i + 1 < args.length )
+			{
+				strBook = args[++i];
+			}
+			else if( args[i].equals( "-solve" ) )
+			{
+				bSolve = true;
+			}
+			else if( args[i].equals( "-hash" ) && i + 1 < args.length )
+			{
+				lHashMB = Long.parseLong( args[++i] );
+			}
+			else if( args[i].equals( "-geometry" ) && i + 1 < args.length )
+			{
+				objGeometry = Geometry.Parse( args[++i] );
+			}
+			else if( strFile == null && ( args[i].equals( "-" ) || !args[i].startsWith( "-" ) ) )
+			{
+				strFile = args[i];
+			}
+			else
+			{
+				strFile = null;
+				break;
+			}
+		}
+		if( strFile == null )
+		{
+			System.out.println( "Usage: Engine [-depth n | -time ms] [-threads n] [-jobs n] [-book file] [-solve [-hash mb]] [-geometry g] <positions file | ->" );
+			return;
+		}
+
+		List<String> objLines = new ArrayList<String>();
+		if( strFile.equals( "-" ) )
+		{
+			BufferedReader objReader = new BufferedReader( new InputStreamReader( System.in ) );
+			String strLine;
+			while( ( strLine = objReader.readLine() ) != null )
+			{
+				objLines.add( strLine );
+			}
+		}
+		else
+		{
+			objLines = Files.readAllLines( Paths.get( strFile ) );
+		}
+		OpeningBook objBook = ( strBook != null ) ? OpeningBook.Open( Paths.get( strBook ) ) : null;
+
+		// Each worker thread keeps an engine, and its tables, for all the
+		//   positions it searches, clearing the transposition table for each
+		//   so the results do not depend on the order they are searched in.
+		final int nEngineDepth = nDepth;
+		final long lEngineMillis = lMillis;
+		final int nEngineThreads = nThreads;
+		final boolean bEngineSolve = bSolve;
+		// Each job's share of the memory budget, halved when it solves.
+		long lShare = ( lHashMB << 20 ) / Math.max( nJobs, 1 ) / ( bSolve ? 2 : 1 );
+		final int nTableBits = TableBits( lShare, 20 );
+		final int nSolverBits = TableBits( lShare, 22 );
+		final Geometry objEngineGeometry = objGeometry;
+		ThreadLocal<Engine> objEngines = ThreadLocal.withInitial( () -> {
+			Engine objEngine = new Engine();
+			objEngine.SetDepth( nEngineDepth );
+			objEngine.SetTimeBudget( lEngineMillis );
+			objEngine.SetThreads( nEngineThreads );
+			objEngine.SetOpeningBook( objBook );
+			objEngine.SetSolver( bEngineSolve ? new Solver( nSolverBits ) : null );
+			objEngine.SetGeometry( objEngineGeometry );
+			objEngine.SetTableBits( nTableBits );
+			objEngine.SetKeepTable( false );
+			return( objEngine );
+		});
+
+		System.out.println( "# position\tmove\tscore\tpv\tdepth\tnodes\tms" );
+		long lStart = System.nanoTime();
+		ExecutorService objPool = Executors.newFixedThreadPool( Math.max( nJobs, 1 ) );
+		List<Future<String>> objResults = new ArrayList<Future<String>>();
+		try
+		{
+			for( String strLine : objLines )
+			{
+				final String strMoves = strLine.trim();
+				if( strMoves.isEmpty() || strMoves.startsWith( "#" ) )
+				{
+					continue;
+				}
+				objResults.add( objPool.submit( () -> {
+					try
+					{
+						return( strMoves + "\t" + objEngines.get().Analyse( strMoves ) );
+					}
+					catch( IllegalArgumentException e )
+					{
+						return( strMoves + "\terror: " + e.getMessage() );
+					}
+				}));
+			}
+
+			for( int i=0; i<objResults.size(); i++ )
+			{
+				System.out.println( objResults.get( i ).get() );
+			}
+		}
+		finally
+		{
+			objPool.shutdown();
+		}
+		long lMillisTotal = ( System.nanoTime() - lStart ) / 1000000;
+		System.out.println( "# " + objResults.size() + " positions in " + lMillisTotal + " ms" );
+		System.out.println( "# " + SearchStats.Get() );
+	}
+}
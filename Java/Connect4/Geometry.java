@@ -0,0 +1,452 @@
+/**
+  * Geometry.java
+  * This class describes the board a game is played on: its number of rows
+  * and columns, and how many pieces in a row win (k). Besides the standard
+  * 6x7 connect-four board it can describe variants such as 7x8, 9x7 or
+  * connect-five, as long as the board has at most 64 squares and 15
+  * columns.
+  * <p>
+  * Everything the boards and the search need to know about the geometry is
+  * precomputed here, once, so that a larger board is played as fast as the
+  * standard one:
+  *   - the bit layout of BitBoard: column by column from the bottom up, with
+  *     a spare bit on top of each column if there is room for it in a long;
+  *   - for each direction, the squares on which k in a row can start, so
+  *     that finding k in a row is a few shift-and-ANDs even without spare
+  *     bits to stop lines from wrapping into the next column;
+  *   - for each direction, the squares that can step 1, 2, ... squares along
+  *     a line without leaving the board, for counting runs with shifts;
+  *   - the lines of the array Board, and the run score of every pattern of
+  *     pieces on a line;
+  *   - the positional advantage of each column, the centre-out move order,
+  *     and the Zobrist numbers.
+  * The evaluation, which both boards compute, is:
+  * runs of exactly 2, 3, ..., k pieces along the rows, the columns and the
+  * diagonals that are at least k long score 1, 2, 4, ..., and pieces in the
+  * centre columns score 2 or 1 more. On the standard board the scores and
+  * the Zobrist keys are exactly those of before.
+  * Dependencies: None
+  */
+
+package connect4;
+
+import java.util.Random;
+
+public class Geometry
+{
+	// The most columns a geometry can have: the transposition table keeps a
+	//   column in four bits.
+	static final int MAX_WIDTH = 15;
+	// The most squares a geometry can have: one bit per square in a long.
+	static final int MAX_SQUARES = 64;
+	// The longest a row or column can be, so that the run score of every
+	//   pattern of pieces on a line fits in a table.
+	static final int MAX_LINE = 16;
+
+	// The directions, as steps of (column, row up): along a column, along a
+	//   row, and both diagonals. The same order as the shifts in m_nShifts.
+	static final int[] DIRECTION_COLS = { 0, 1, 1, 1 };
+	static final int[] DIRECTION_ROWS = { 1, 0, -1, 1 };
+
+	// The standard connect-four board.
+	public static final Geometry STANDARD = new Geometry( 6, 7, 4 );
+
+	// Board dimensions and the number in a row that wins.
+	final int m_nRows;
+	final int m_nCols;
+	final int m_nConnect;
+	final int m_nSquares;
+	// The bits of a column in BitBoard: m_nRows, plus one spare if it fits.
+	final int m_nColumnBits;
+	final boolean m_bSpareBits;
+	// The shifts that step along a column, a row, and both diagonals.
+	final int[] m_nShifts = new int[4];
+
+	// Masks of every square, and of the squares of each column.
+	final long m_lBoardMask;
+	final long[] m_lColumnMasks;
+	// For each direction, the squares on which k in a row can start, and the
+	//   shifts that find k in a row (see HasConnect()), m_nWinSteps of them
+	//   per direction.
+	final long[] m_lWinStarts = new long[4];
+	final int m_nWinSteps;
+	final int[] m_nWinShifts;
+	// For each direction, the squares on lines at least k long, the only
+	//   lines the evaluation counts runs along.
+	final long[] m_lLineMasks = new long[4];
+	// For each direction, the squares whose previous square along the line
+	//   is on the board.
+	final long[] m_lHasPrevious = new long[4];
+	// For each direction and j (at [d * (k + 2) + j]), the squares from which
+	//   j - 1 steps along the line stay on the board (a run of j can start
+	//   there).
+	final long[] m_lReach;
+	// For each direction, the longest run worth counting: k + 1, or the
+	//   longest line in that direction if it is shorter.
+	final int[] m_nRunLimits = new int[4];
+	// The score of a run of at least j less the score of a run of at least
+	//   j - 1, so that the runs of at least j, for every j, add up to the
+	//   score of the runs of exactly j.
+	final int[] m_nRunWeights;
+	// The pieces that score a positional advantage of 2 and of 1.
+	final long m_lCentreMask;
+	final long m_lNearCentreMask;
+	// The positional advantage of a piece in each column.
+	final int[] m_nColumnScores;
+	// The columns from the centre out.
+	final int[] m_nCentreOrder;
+	// True if the evaluation scores a position and its mirror image alike:
+	//   only if the column scores are symmetric, which on odd widths, the
+	//   standard board included, they are not.
+	final boolean m_bSymmetric;
+
+	// The Zobrist numbers, indexed by side and bit, and the number XORed in
+	//   when YELLOW is to move. A fixed seed keeps keys the same from run to
+	//   run.
+	final long[][] m_lZobrist;
+	final long m_lZobristYellowToMove;
+
+	// The lines of the array Board (rows, columns and diagonals at least k
+	//   long), plus one that no piece is on, to pad the lines of every
+	//   square out to four.
+	final int m_nLines;
+	// The four lines through each square (row * m_nCols + col, row 0 at the
+	//   top), and the bit of the square within the pattern of each line (0
+	//   for the padding).
+	final int[] m_nSquareLines;
+	final int[] m_nSquareLineBits;
+	// The run score of every pattern of pieces on a line, and whether it
+	//   holds k in a row.
+	final int[] m_nRunScores;
+	final boolean[] m_bWins;
+
+	// Create a geometry of nRows by nCols where nConnect in a row win.
+	//   Throws an IllegalArgumentException for a board the engine cannot
+	//   play on.
+	public Geometry( int nRows, int nCols, int nConnect )
+	{
+		if( nRows < 1 || nCols < 1 || nCols > MAX_WIDTH || nRows > MAX_LINE
+			|| nRows * nCols > MAX_SQUARES || nConnect < 2 || nConnect > Math.max( nRows, nCols ) )
+		{
+			throw new IllegalArgumentException( "cannot play connect " + nConnect
+				+ " on " + nRows + "x" + nCols );
+		}
+		m_nRows = nRows;
+		m_nCols = nCols;
+		m_nConnect = nConnect;
+		m_nSquares = nRows * nCols;
+		m_bSpareBits = ( ( nRows + 1 ) * nCols <= MAX_SQUARES );
+		m_nColumnBits = m_bSpareBits ? nRows + 1 : nRows;
+		for( int d=0; d<4; d++ )
+		{
+			m_nShifts[d] = DIRECTION_COLS[d] * m_nColumnBits + DIRECTION_ROWS[d];
+		}
+
+		m_lColumnMasks = new long[nCols];
+		long lBoard = 0;
+		for( int col=0; col<nCols; col++ )
+		{
+			m_lColumnMasks[col] = ( ( 1L << nRows ) - 1 ) << ( col * m_nColumnBits );
+			lBoard |= m_lColumnMasks[col];
+		}
+		m_lBoardMask = lBoard;
+
+		// Walk every square in every direction.
+		m_lReach = new long[4 * ( nConnect + 2 )];
+		for( int d=0; d<4; d++ )
+		{
+			for( int col=0; col<nCols; col++ )
+			{
+				for( int nUp=0; nUp<nRows; nUp++ )
+				{
+					long lBit = 1L << ( col * m_nColumnBits + nUp );
+					int nSteps = Steps( col, nUp, d, 1 );
+					m_nRunLimits[d] = Math.max( m_nRunLimits[d], Math.min( nSteps + 1, nConnect + 1 ) );
+					if( nSteps + 1 + Steps( col, nUp, d, -1 ) >= nConnect )
+					{
+						m_lLineMasks[d] |= lBit;
+					}
+					if( nSteps + 1 >= nConnect )
+					{
+						m_lWinStarts[d] |= lBit;
+					}
+					if( Steps( col, nUp, d, -1 ) > 0 )
+					{
+						m_lHasPrevious[d] |= lBit;
+					}
+					for( int j=1; j<=nConnect+1 && j<=nSteps+1; j++ )
+					{
+						m_lReach[d * ( nConnect + 2 ) + j] |= lBit;
+					}
+				}
+			}
+		}
+
+		m_nRunWeights = new int[nConnect + 2];
+		for( int j=2; j<=nConnect+1; j++ )
+		{
+			m_nRunWeights[j] = RunScore( j ) - RunScore( j - 1 );
+		}
+
+		// Each bit of a run of n AND the run of n starting n squares on marks
+		//   a run of 2n, so k in a row takes doubling the length while it is
+		//   at most k, then a last, overlapping step.
+		int nSteps = 0;
+		int[] nLengths = new int[8];
+		for( int nLength=1; nLength<nConnect; )
+		{
+			nLengths[nSteps] = Math.min( nLength, nConnect - nLength );
+			nLength += nLengths[nSteps++];
+		}
+		m_nWinSteps = nSteps;
+		m_nWinShifts = new int[4 * nSteps];
+		for( int d=0; d<4; d++ )
+		{
+			for( int i=0; i<nSteps; i++ )
+			{
+				m_nWinShifts[d * nSteps + i] = nLengths[i] * m_nShifts[d];
+			}
+		}
+
+		// The two columns either side of the centre line score 2, and the
+		//   next column out on each side 1. On the standard board that is
+		//   columns 2 and 3, and 1 and 4.
+		int nCentre = nCols / 2;
+		m_nColumnScores = new int[nCols];
+		long lCentre = 0, lNearCentre = 0;
+		for( int col=0; col<nCols; col++ )
+		{
+			if( col == nCentre - 1 || col == nCentre )
+			{
+				m_nColumnScores[col] = 2;
+				lCentre |= m_lColumnMasks[col];
+			}
+			else if( col == nCentre - 2 || col == nCentre + 1 )
+			{
+				m_nColumnScores[col] = 1;
+				lNearCentre |= m_lColumnMasks[col];
+			}
+		}
+		m_lCentreMask = lCentre;
+		m_lNearCentreMask = lNearCentre;
+		boolean bSymmetric = true;
+		for( int col=0; col<nCols; col++ )
+		{
+			bSymmetric &= m_nColumnScores[col] == m_nColumnScores[nCols - 1 - col];
+		}
+		m_bSymmetric = bSymmetric;
+
+		m_nCentreOrder = new int[nCols];
+		m_nCentreOrder[0] = nCentre;
+		for( int i=1, nOffset=1; i<nCols; nOffset++ )
+		{
+			if( nCentre - nOffset >= 0 )
+			{
+				m_nCentreOrder[i++] = nCentre - nOffset;
+			}
+			if( nCentre + nOffset < nCols )
+			{
+				m_nCentreOrder[i++] = nCentre + nOffset;
+			}
+		}
+
+		Random objRandom = new Random( 0x436F6E6E65637434L );
+		m_lZobrist = new long[2][nCols * m_nColumnBits];
+		for( int nSide=0; nSide<2; nSide++ )
+		{
+			for( int nBit=0; nBit<nCols*m_nColumnBits; nBit++ )
+			{
+				m_lZobrist[nSide][nBit] = objRandom.nextLong();
+			}
+		}
+		m_lZobristYellowToMove = objRandom.nextLong();
+
+		// Number the lines of the array board, in each direction from the
+		//   square that starts them.
+		int nLines = 0;
+		int nMaxLength = 0;
+		m_nSquareLines = new int[m_nSquares * 4];
+		m_nSquareLineBits = new int[m_nSquares * 4];
+		int[] nLineCount = new int[m_nSquares];
+		for( int d=0; d<4; d++ )
+		{
+			for( int col=0; col<nCols; col++ )
+			{
+				for( int nUp=0; nUp<nRows; nUp++ )
+				{
+					int nLength = Steps( col, nUp, d, 1 ) + 1;
+					if( Steps( col, nUp, d, -1 ) > 0 || nLength < nConnect )
+					{
+						continue;
+					}
+					for( int i=0; i<nLength; i++ )
+					{
+						int nSquare = ( nRows - 1 - ( nUp + i * DIRECTION_ROWS[d] ) ) * nCols
+							+ col + i * DIRECTION_COLS[d];
+						int nSlot = nSquare * 4 + nLineCount[nSquare]++;
+						m_nSquareLines[nSlot] = nLines;
+						m_nSquareLineBits[nSlot] = 1 << i;
+					}
+					nLines++;
+					nMaxLength = Math.max( nMaxLength, nLength );
+				}
+			}
+		}
+		m_nLines = nLines;
+		for( int nSquare=0; nSquare<m_nSquares; nSquare++ )
+		{
+			for( int nSlot=nSquare*4+nLineCount[nSquare]; nSlot<nSquare*4+4; nSlot++ )
+			{
+				m_nSquareLines[nSlot] = nLines;
+			}
+		}
+
+		// Score the runs of each pattern of pieces on a line.
+		m_nRunScores = new int[1 << nMaxLength];
+		m_bWins = new boolean[1 << nMaxLength];
+		for( int nPattern=0; nPattern<m_nRunScores.length; nPattern++ )
+		{
+			int nScore = 0;
+			int nCount = 0;
+			for( int i=0; i<=nMaxLength; i++ )
+			{
+				if( ( nPattern >>> i & 1 ) != 0 )
+				{
+					nCount++;
+				}
+				else
+				{
+					nScore += RunScore( nCount );
+					m_bWins[nPattern] |= ( nCount >= nConnect );
+					nCount = 0;
+				}
+			}
+			m_nRunScores[nPattern] = nScore;
+		}
+	}
+
+	// The number of steps from a square (col, nUp rows from the bottom) in a
+	//   direction, forwards (nSign 1) or backwards (nSign -1), before the
+	//   edge of the board.
+	int Steps( int col, int nUp, int d, int nSign )
+	{
+		int nSteps = 0;
+		for( ;; )
+		{
+			col += nSign * DIRECTION_COLS[d];
+			nUp += nSign * DIRECTION_ROWS[d];
+			if( col < 0 || col >= m_nCols || nUp < 0 || nUp >= m_nRows )
+			{
+				return( nSteps );
+			}
+			nSteps++;
+		}
+	}
+
+	// The score of a run of exactly nCount pieces: 1, 2, 4, ... for runs of
+	//   two up to k, and nothing for shorter or longer runs.
+	int RunScore( int nCount )
+	{
+		return( ( nCount >= 2 && nCount <= m_nConnect ) ? 1 << ( nCount - 2 ) : 0 );
+	}
+
+	// The bit of BitBoard for the square at (row, col), where row 0 is the
+	//   top row as in the array board.
+	long Bit( int row, int col )
+	{
+		return( 1L << ( col * m_nColumnBits + m_nRows - 1 - row ) );
+	}
+
+	// See if the pieces b hold k in a row.
+	boolean HasConnect( long b )
+	{
+		int nSteps = m_nWinSteps;
+		int[] nShifts = m_nWinShifts;
+		for( int d=0; d<4; d++ )
+		{
+			// Each bit of m marks the start of a run (or of a run that wraps
+			//   into the next column, which m_lWinStarts leaves out).
+			long m = b;
+			for( int i=d*nSteps; i<d*nSteps+nSteps; i++ )
+			{
+				m &= m >>> nShifts[i];
+			}
+			if( ( m & m_lWinStarts[d] ) != 0 )
+			{
+				return( true );
+			}
+		}
+		return( false );
+	}
+
+	// Score the pieces b: the runs of exactly 2 to k along every line at
+	//   least k long, plus the positional advantage of the centre columns.
+	int Score( long b )
+	{
+		int[] nRunWeights = m_nRunWeights;
+		int nRuns = 0;
+		for( int d=0; d<4; d++ )
+		{
+			int s = m_nShifts[d];
+			int nLimit = m_nRunLimits[d];
+			long lLine = b & m_lLineMasks[d];
+			// The first piece of each run, then the pieces that start a run
+			//   of at least j, for j up to k + 1. The spare bits are empty, so
+			//   they end a run at the top of a column without masks.
+			if( m_bSpareBits )
+			{
+				long lAtLeast = lLine & ~( lLine << s );
+				for( int j=2; j<=nLimit; j++ )
+				{
+					lAtLeast &= lLine >>> ( ( j - 1 ) * s );
+					nRuns += Long.bitCount( lAtLeast ) * nRunWeights[j];
+				}
+			}
+			else
+			{
+				long[] lReach = m_lReach;
+				int nReach = d * ( m_nConnect + 2 );
+				long lAtLeast = lLine & ~( ( lLine << s ) & m_lHasPrevious[d] );
+				for( int j=2; j<=nLimit; j++ )
+				{
+					lAtLeast &= ( lLine >>> ( ( j - 1 ) * s ) ) & lReach[nReach + j];
+					nRuns += Long.bitCount( lAtLeast ) * nRunWeights[j];
+				}
+			}
+		}
+		return( Long.bitCount( b & m_lCentreMask ) * 2
+			+ Long.bitCount( b & m_lNearCentreMask ) + nRuns );
+	}
+
+	// See if this is the standard board, on which the Solver and the
+	//   OpeningBook play.
+	public boolean IsStandard()
+	{
+		return( m_nRows == 6 && m_nCols == 7 && m_nConnect == 4 );
+	}
+
+	// The geometry as rows x columns, and k if it is not four.
+	@Override
+	public String toString()
+	{
+		return( m_nRows + "x" + m_nCols + ( m_nConnect != 4 ? "x" + m_nConnect : "" ) );
+	}
+
+	// Parse a geometry written as by toString(): rows x columns [x k].
+	public static Geometry Parse( String strGeometry )
+	{
+		String[] strParts = strGeometry.split( "x" );
+		try
+		{
+			if( strParts.length == 2 || strParts.length == 3 )
+			{
+				return( new Geometry( Integer.parseInt( strParts[0] ), Integer.parseInt( strParts[1] ),
+					strParts.length == 3 ? Integer.parseInt( strParts[2] ) : 4 ) );
+			}
+		}
+		catch( NumberFormatException e )
+		{
+		}
+		throw new IllegalArgumentException( "not a geometry: \"" + strGeometry + "\"" );
+	}
+}
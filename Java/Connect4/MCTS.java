@@ -0,0 +1,531 @@
+/**
+  * MCTS.java
+  * This class finds the computer's move by Monte Carlo tree search instead
+  * of alpha-beta. It needs no evaluation function: a position is valued by
+  * playing random games (playouts) from it to the end, and the search grows
+  * a tree towards the moves whose playouts go best. On the larger boards of
+  * other geometries, where a fixed-depth MiniMax sees little of the game
+  * and its evaluation is a poor guide, this plays much better for the same time.
+  * <p>
+  * Each playout runs the four steps of UCT:
+  *   - selection: from the root, go to the child with the best upper
+  *     confidence bound, wins / visits + C * sqrt( ln( parent visits ) /
+  *     visits ), which trades trying the best moves against trying the
+  *     least tried ones;
+  *   - expansion: add one untried move of the first node that has one;
+  *   - simulation: play random moves on the BitBoard until a side has k in
+  *     a row or the board is full;
+  *   - backpropagation: add the result to every node on the way, each from
+  *     the point of view of the side that moved into it.
+  * The move played is the root's most visited child.
+  * <p>
+  * The tree is kept between moves: when GetMove() is asked for a position
+  * that the tree has already reached (after the move it played and the
+  * opponent's reply), the subtree of that position becomes the new root and
+  * its playouts are not thrown away.
+  * <p>
+  * With more than one thread the search is root parallel: every thread grows
+  * its own tree of the same position, with its own random numbers, and the
+  * visits of the root moves are added up over the trees to choose the move.
+  * The threads share nothing while they search.
+  * Dependencies: BitBoard.java, Geometry.java, Position.java, Connect4.java,
+  *   MiniMax.java, Searcher.java
+  */
+
+package connect4;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class MCTS implements Searcher
+{
+	// A node of the tree: a position, reached by m_nMove of m_nPiece.
+	static class Node
+	{
+		Node m_objParent;
+		// The move (column) into this node, and the side that played it.
+		int m_nMove;
+		int m_nPiece;
+		// The children, indexed by column, created as they are expanded.
+		Node[] m_objChildren;
+		// The legal moves that have no child yet, as bits by column.
+		int m_nUntried;
+		// The playouts through this node, and their results for m_nPiece: 1
+		//   for a win, 0.5 for a draw.
+		int m_nVisits;
+		double m_dWins;
+		// Set if the game is over in this position: m_nPiece won (1), or it
+		//   is a draw (0.5).
+		boolean m_bTerminal;
+		double m_dTerminalResult;
+
+		Node( Node objParent, int nMove, int nPiece )
+		{
+			m_objParent = objParent;
+			m_nMove = nMove;
+			m_nPiece = nPiece;
+		}
+	}
+
+	// One thread's tree, the position of its root, and its random numbers.
+	static class Tree
+	{
+		Node m_objRoot;
+		BitBoard m_objBoard;
+		long m_lRandom;
+		long m_lPlayouts;
+		// The moves played from the root in the current playout, in the tree
+		//   and in the random game after it.
+		int[] m_nPath = new int[Geometry.MAX_SQUARES];
+		int[] m_nGame = new int[Geometry.MAX_SQUARES];
+		// The columns not yet full during a playout.
+		int[] m_nOpen = new int[Geometry.MAX_WIDTH];
+
+		Tree( long lSeed )
+		{
+			m_lRandom = lSeed | 1;
+		}
+
+		// The next random number, by xorshift: fast, and good enough to
+		//   pick moves.
+		int NextInt( int nBound )
+		{
+			long x = m_lRandom;
+			x ^= x << 13;
+			x ^= x >>> 7;
+			x ^= x << 17;
+			m_lRandom = x;
+			return( (int)( ( x >>> 33 ) % nBound ) );
+		}
+	}
+
+	// The exploration constant C of the upper confidence bound.
+	double m_dExploration = Math.sqrt( 2 );
+	// The playouts per move, over all threads, unless there is a time budget.
+	long m_lPlayouts = 100000;
+	// The time budget per move in milliseconds, or 0 to run m_lPlayouts.
+	long m_lTimeBudget = 0;
+	// Keep the tree between moves.
+	boolean m_bTreeReuse = true;
+	// The geometry of the board searched.
+	Geometry m_objGeometry = Geometry.STANDARD;
+	// The trees, one per thread, and the pool the threads after the first
+	//   run on, created on first use.
+	Tree[] m_objTrees = new Tree[0];
+	ExecutorService m_objPool;
+	int m_nThreads = 1;
+	// The playouts of the last search, on all threads, and how many of the
+	//   root's visits were kept from earlier searches.
+	long m_lLastPlayouts;
+	long m_lReusedVisits;
+	// The share of its playouts that the move played won, for the side that
+	//   played it.
+	double m_dWinRate;
+
+	// Search for up to lMillis per move, or run a fixed number of playouts
+	//   (SetPlayouts()) if lMillis is 0.
+	public void SetTimeBudget( long lMillis )
+	{
+		m_lTimeBudget = lMillis;
+	}
+
+	// Run a number of playouts per move, over all threads.
+	public void SetPlayouts( long lPlayouts )
+	{
+		m_lPlayouts = Math.max( lPlayouts, 1 );
+	}
+
+	// Search with a number of threads, each growing its own tree.
+	public void SetThreads( int nThreads )
+	{
+		m_nThreads = Math.max( nThreads, 1 );
+	}
+
+	// Set the exploration constant C of the upper confidence bound.
+	public void SetExploration( double dExploration )
+	{
+		m_dExploration = dExploration;
+	}
+
+	// Keep the tree between moves (true), or start every search afresh.
+	public void SetTreeReuse( boolean bTreeReuse )
+	{
+		m_bTreeReuse = bTreeReuse;
+	}
+
+	// Start a new game: throw the trees away, keeping the threads.
+	public void NewGame()
+	{
+		for( int i=0; i<m_objTrees.length; i++ )
+		{
+			m_objTrees[i].m_objRoot = null;
+		}
+	}
+
+	// Search on a board of a geometry. The trees are thrown away.
+	public void SetGeometry( Geometry objGeometry )
+	{
+		m_objGeometry = objGeometry;
+		m_objTrees = new Tree[0];
+	}
+
+	// Get the playouts of the last search, on all threads.
+	public long GetNodeCount()
+	{
+		return( m_lLastPlayouts );
+	}
+
+	// Get the root visits of the last search that were kept from earlier
+	//   searches by tree reuse.
+	public long GetReusedVisits()
+	{
+		return( m_lReusedVisits );
+	}
+
+	// Get the share of the playouts through the move found that it won, for
+	//   the side that played it (a draw counts half).
+	public double GetWinRate()
+	{
+		return( m_dWinRate );
+	}
+
+	// Find a move for nPiece, and add up the visits of the root moves over
+	//   the trees of all threads.
+	public void GetMove( Position pos, int[][] BoardData, int nPiece )
+	{
+		BitBoard brd = new BitBoard( m_objGeometry );
+		brd.SetBoardData( BoardData );
+		if( m_objTrees.length != m_nThreads )
+		{
+			m_objTrees = new Tree[m_nThreads];
+			for( int i=0; i<m_nThreads; i++ )
+			{
+				m_objTrees[i] = new Tree( System.nanoTime() * ( 2 * i + 1 ) );
+			}
+			if( m_objPool != null )
+			{
+				m_objPool.shutdown();
+			}
+			m_objPool = null;
+			if( m_nThreads > 1 )
+			{
+				m_objPool = Executors.newFixedThreadPool( m_nThreads - 1, r -> {
+					Thread objThread = new Thread( r, "MCTS worker" );
+					objThread.setDaemon( true );
+					return( objThread );
+				});
+			}
+		}
+
+		long lDeadline = ( m_lTimeBudget > 0 ) ? System.nanoTime() + m_lTimeBudget * 1000000L : 0;
+		long lPlayouts = ( m_lPlayouts + m_nThreads - 1 ) / m_nThreads;
+		m_lReusedVisits = 0;
+		for( int i=0; i<m_nThreads; i++ )
+		{
+			SetRoot( m_objTrees[i], brd, nPiece );
+			m_lReusedVisits += m_objTrees[i].m_objRoot.m_nVisits;
+		}
+
+		// The first tree grows on this thread.
+		Future<?>[] objFutures = new Future<?>[m_nThreads - 1];
+		for( int i=1; i<m_nThreads; i++ )
+		{
+			final Tree objTree = m_objTrees[i];
+			objFutures[i - 1] = m_objPool.submit( () -> Search( objTree, lPlayouts, lDeadline ) );
+		}
+		Search( m_objTrees[0], lPlayouts, lDeadline );
+		for( int i=0; i<objFutures.length; i++ )
+		{
+			try
+			{
+				objFutures[i].get();
+			}
+			catch( Exception e )
+			{
+				e.printStackTrace();
+			}
+		}
+
+		// Play the move with the most visits over all trees.
+		int nCols = m_objGeometry.m_nCols;
+		long[] lVisits = new long[nCols];
+		double[] dWins = new double[nCols];
+		m_lLastPlayouts = 0;
+		for( int i=0; i<m_nThreads; i++ )
+		{
+			Tree objTree = m_objTrees[i];
+			m_lLastPlayouts += objTree.m_lPlayouts;
+			Node[] objChildren = objTree.m_objRoot.m_objChildren;
+			for( int col=0; objChildren!=null && col<nCols; col++ )
+			{
+				if( objChildren[col] != null )
+				{
+					lVisits[col] += objChildren[col].m_nVisits;
+					dWins[col] += objChildren[col].m_dWins;
+				}
+			}
+		}
+		int nBestMove = -1;
+		for( int i=0; i<nCols; i++ )
+		{
+			int col = m_objGeometry.m_nCentreOrder[i];
+			if( brd.CanPlay( col ) && ( nBestMove < 0 || lVisits[col] > lVisits[nBestMove] ) )
+			{
+				nBestMove = col;
+			}
+		}
+		if( nBestMove >= 0 )
+		{
+			MiniMax.SetPosition( pos, brd, nBestMove );
+			m_dWinRate = ( lVisits[nBestMove] == 0 ) ? 0.5 : dWins[nBestMove] / lVisits[nBestMove];
+		}
+
+		if( !m_bTreeReuse )
+		{
+			for( int i=0; i<m_nThreads; i++ )
+			{
+				m_objTrees[i].m_objRoot = null;
+			}
+		}
+	}
+
+	// Make a tree's root the position on a board with nPiece to move: the
+	//   node of the position if the tree reached it within two moves of its
+	//   old root, otherwise a new node.
+	void SetRoot( Tree objTree, BitBoard brd, int nPiece )
+	{
+		objTree.m_lPlayouts = 0;
+		long lKey = brd.GetHash( nPiece );
+		Node objRoot = null;
+		if( objTree.m_objRoot != null )
+		{
+			objRoot = FindNode( objTree.m_objRoot, objTree.m_objBoard, lKey, 2 );
+		}
+		if( objRoot == null )
+		{
+			objRoot = new Node( null, -1, nPiece ^ 1 );
+			objRoot.m_nUntried = LegalMoves( brd );
+		}
+		objRoot.m_objParent = null;
+		objTree.m_objRoot = objRoot;
+		objTree.m_objBoard = brd.Clone();
+	}
+
+	// Find the node of the position with Zobrist key lKey (with the side to
+	//   move) in a tree, up to nDepth moves below objNode, whose position is
+	//   on pBoard. Returns null if it is not in the tree.
+	static Node FindNode( Node objNode, BitBoard pBoard, long lKey, int nDepth )
+	{
+		if( pBoard.GetHash( objNode.m_nPiece ^ 1 ) == lKey )
+		{
+			return( objNode );
+		}
+		if( nDepth == 0 || objNode.m_objChildren == null )
+		{
+			return( null );
+		}
+		for( int col=0; col<objNode.m_objChildren.length; col++ )
+		{
+			Node objChild = objNode.m_objChildren[col];
+			if( objChild == null )
+			{
+				continue;
+			}
+			pBoard.MakeMove( col, objChild.m_nPiece );
+			Node objFound = FindNode( objChild, pBoard, lKey, nDepth - 1 );
+			pBoard.UnmakeMove( col );
+			if( objFound != null )
+			{
+				return( objFound );
+			}
+		}
+		return( null );
+	}
+
+	// The legal moves of a position, as bits by column.
+	static int LegalMoves( BitBoard pBoard )
+	{
+		int nMoves = 0;
+		for( int col=0; col<pBoard.m_objGeometry.m_nCols; col++ )
+		{
+			if( pBoard.CanPlay( col ) )
+			{
+				nMoves |= 1 << col;
+			}
+		}
+		return( nMoves );
+	}
+
+	// Grow a tree by a number of playouts, or until the deadline if there is
+	//   one (checked every 256 playouts).
+	void Search( Tree objTree, long lPlayouts, long lDeadline )
+	{
+		for( long i=0; ; i++ )
+		{
+			if( lDeadline != 0 ? ( ( i & 255 ) == 0 && System.nanoTime() >= lDeadline ) : i >= lPlayouts )
+			{
+				break;
+			}
+			// A decided root has nothing left to search.
+			if( objTree.m_objRoot.m_nUntried == 0 && objTree.m_objRoot.m_objChildren == null )
+			{
+				break;
+			}
+			Playout( objTree );
+		}
+	}
+
+	// Run one playout: select and expand a node, play the game out at random,
+	//   and back the result up the tree.
+	void Playout( Tree objTree )
+	{
+		BitBoard brd = objTree.m_objBoard;
+		int[] nPath = objTree.m_nPath;
+		int nPathLength = 0;
+		Node objNode = objTree.m_objRoot;
+
+		// Selection: down through fully expanded nodes.
+		while( !objNode.m_bTerminal && objNode.m_nUntried == 0 )
+		{
+			objNode = SelectChild( objNode );
+			brd.MakeMove( objNode.m_nMove, objNode.m_nPiece );
+			nPath[nPathLength++] = objNode.m_nMove;
+		}
+
+		// Expansion: one untried move, chosen at random.
+		double dResult;
+		if( !objNode.m_bTerminal )
+		{
+			int nUntried = objNode.m_nUntried;
+			int nPick = objTree.NextInt( Integer.bitCount( nUntried ) );
+			while( nPick-- > 0 )
+			{
+				nUntried &= nUntried - 1;
+			}
+			int col = Integer.numberOfTrailingZeros( nUntried );
+			objNode.m_nUntried &= ~( 1 << col );
+			if( objNode.m_objChildren == null )
+			{
+				objNode.m_objChildren = new Node[brd.m_objGeometry.m_nCols];
+			}
+			Node objChild = new Node( objNode, col, objNode.m_nPiece ^ 1 );
+			objNode.m_objChildren[col] = objChild;
+			brd.MakeMove( col, objChild.m_nPiece );
+			nPath[nPathLength++] = col;
+			objNode = objChild;
+
+			if( brd.DidSideWin( objChild.m_nPiece ) )
+			{
+				objChild.m_bTerminal = true;
+				objChild.m_dTerminalResult = 1;
+			}
+			else if( brd.IsCatsGame() )
+			{
+				objChild.m_bTerminal = true;
+				objChild.m_dTerminalResult = 0.5;
+			}
+			else
+			{
+				objChild.m_nUntried = LegalMoves( brd );
+			}
+		}
+
+		// Simulation: the result for the side that moved into the node.
+		if( objNode.m_bTerminal )
+		{
+			dResult = objNode.m_dTerminalResult;
+		}
+		else
+		{
+			dResult = RandomGame( objTree, brd, objNode.m_nPiece );
+		}
+
+		// Backpropagation: the result flips with the side to move.
+		while( objNode != null )
+		{
+			objNode.m_nVisits++;
+			objNode.m_dWins += dResult;
+			dResult = 1 - dResult;
+			objNode = objNode.m_objParent;
+		}
+		while( nPathLength > 0 )
+		{
+			brd.UnmakeMove( nPath[--nPathLength] );
+		}
+		objTree.m_lPlayouts++;
+	}
+
+	// The child of a fully expanded node with the best upper confidence
+	//   bound.
+	Node SelectChild( Node objNode )
+	{
+		double dLogVisits = Math.log( objNode.m_nVisits );
+		Node objBest = null;
+		double dBest = Double.NEGATIVE_INFINITY;
+		Node[] objChildren = objNode.m_objChildren;
+		for( int col=0; col<objChildren.length; col++ )
+		{
+			Node objChild = objChildren[col];
+			if( objChild == null )
+			{
+				continue;
+			}
+			// A move that wins at once is always the one to play.
+			if( objChild.m_bTerminal && objChild.m_dTerminalResult == 1 )
+			{
+				return( objChild );
+			}
+			double dValue = objChild.m_dWins / objChild.m_nVisits
+				+ m_dExploration * Math.sqrt( dLogVisits / objChild.m_nVisits );
+			if( dValue > dBest )
+			{
+				dBest = dValue;
+				objBest = objChild;
+			}
+		}
+		return( objBest );
+	}
+
+	// Play random moves, starting with the side after nPiece, until the game
+	//   is over, then take them back. Returns the result for nPiece.
+	static double RandomGame( Tree objTree, BitBoard brd, int nPiece )
+	{
+		int nRows = brd.m_objGeometry.m_nRows;
+		int[] nOpen = objTree.m_nOpen;
+		int nOpenCount = 0;
+		for( int col=0; col<brd.m_objGeometry.m_nCols; col++ )
+		{
+			if( brd.CanPlay( col ) )
+			{
+				nOpen[nOpenCount++] = col;
+			}
+		}
+		int[] nGame = objTree.m_nGame;
+		int nMoves = 0;
+		int nMover = nPiece;
+		double dResult = 0.5;
+		while( nOpenCount > 0 )
+		{
+			nMover ^= 1;
+			int i = objTree.NextInt( nOpenCount );
+			int col = nOpen[i];
+			brd.MakeMove( col, nMover );
+			nGame[nMoves++] = col;
+			if( brd.DidSideWin( nMover ) )
+			{
+				dResult = ( nMover == nPiece ) ? 1 : 0;
+				break;
+			}
+			if( brd.GetHeight( col ) == nRows )
+			{
+				nOpen[i] = nOpen[--nOpenCount];
+			}
+		}
+		while( nMoves > 0 )
+		{
+			brd.UnmakeMove( nGame[--nMoves] );
+		}
+		return( dResult );
+	}
+}
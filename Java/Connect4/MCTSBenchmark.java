@@ -0,0 +1,70 @@
+/**
+  * MCTSBenchmark.java
+  * This program measures the playouts per second of MCTS, and how they
+  * scale with the number of threads of its root parallel search. The
+  * benchmark positions of MiniMaxBenchmark are each searched for a fixed
+  * time with 1, 2, ... up to N threads, on the standard board and on a
+  * board of each other geometry given.
+  * Usage: MCTSBenchmark [max threads] [ms per position] [geometry ...]
+  * Dependencies: MCTS.java, MiniMaxBenchmark.java, Geometry.java,
+  *   Position.java
+  */
+
+package connect4;
+
+public class MCTSBenchmark
+{
+	public static void main( String[] args )
+	{
+		int nMaxThreads = ( args.length > 0 ) ? Integer.parseInt( args[0] )
+			: Runtime.getRuntime().availableProcessors();
+		long lMillis = ( args.length > 1 ) ? Long.parseLong( args[1] ) : 500;
+		Geometry[] objGeometries = new Geometry[Math.max( args.length - 1, 1 )];
+		objGeometries[0] = Geometry.STANDARD;
+		for( int i=2; i<args.length; i++ )
+		{
+			objGeometries[i - 1] = Geometry.Parse( args[i] );
+		}
+
+		// Warm up once on all threads.
+		RunSet( Geometry.STANDARD, nMaxThreads, lMillis );
+
+		System.out.println( "geometry\tthreads\tplayouts/s\tspeedup" );
+		for( int g=0; g<objGeometries.length; g++ )
+		{
+			long lBase = 0;
+			for( int nThreads=1; nThreads<=nMaxThreads; nThreads++ )
+			{
+				long lPlayoutsPerSecond = RunSet( objGeometries[g], nThreads, lMillis );
+				if( nThreads == 1 )
+				{
+					lBase = lPlayoutsPerSecond;
+				}
+				System.out.println( objGeometries[g] + "\t" + nThreads + "\t" + lPlayoutsPerSecond + "\t"
+					+ String.format( "%.2f", (double)lPlayoutsPerSecond / Math.max( lBase, 1 ) ) );
+			}
+		}
+	}
+
+	// Search every benchmark position for lMillis with a number of threads.
+	//   Returns the playouts per second on all threads.
+	static long RunSet( Geometry objGeometry, int nThreads, long lMillis )
+	{
+		MCTS objMCTS = new MCTS();
+		objMCTS.SetGeometry( objGeometry );
+		objMCTS.SetThreads( nThreads );
+		objMCTS.SetTimeBudget( lMillis );
+		// Unrelated positions share no tree.
+		objMCTS.SetTreeReuse( false );
+		long lPlayouts = 0;
+		long lStart = System.nanoTime();
+		for( int i=0; i<MiniMaxBenchmark.POSITIONS.length; i++ )
+		{
+			String strMoves = MiniMaxBenchmark.POSITIONS[i];
+			int nPiece = strMoves.length() % 2 == 0 ? Connect4.RED : Connect4.YELLOW;
+			objMCTS.GetMove( new Position(), MiniMaxBenchmark.MakeBoardData( objGeometry, strMoves ), nPiece );
+			lPlayouts += objMCTS.GetNodeCount();
+		}
+		return( MiniMaxBenchmark.NodesPerSecond( lPlayouts, System.nanoTime() - lStart ) );
+	}
+}
@@ -0,0 +1,109 @@
+/**
+  * MiniMaxBenchmark.java
+  * This program measures the search speed of MiniMax, in nodes per second,
+  * over a fixed set of positions. Each position is searched once to warm up
+  * and then timed, first with the original array board and then with the
+  * bitboard. The bytes allocated by the search thread are reported per node
+  * as well, which should be zero but for a constant per search. Given a
+  * geometry (see Geometry.Parse()), the same positions are searched on a
+  * board of that geometry, to compare its speed with the standard board's.
+  * Usage: MiniMaxBenchmark [max ply] [geometry]
+  * Dependencies: MiniMax.java, Board.java, BitBoard.java, Geometry.java,
+  *   Position.java
+  */
+
+package connect4;
+
+import java.lang.management.ManagementFactory;
+
+public class MiniMaxBenchmark
+{
+	// The benchmark positions, as the columns (1-7) played from an empty
+	//   board, starting with RED.
+	static final String[] POSITIONS =
+	{
+		"",
+		"44",
+		"4453",
+		"3344",
+		"3363334",
+		"5565441",
+		"44443352",
+		"43443521127",
+		"444333255526",
+		"171751452743",
+		"2252576253462244111563365343671351441"
+	};
+
+	public static void main( String[] args )
+	{
+		int nMaxPly = ( args.length > 0 ) ? Integer.parseInt( args[0] ) : 7;
+		Geometry objGeometry = ( args.length > 1 ) ? Geometry.Parse( args[1] ) : Geometry.STANDARD;
+
+		long[] lTotalNodes = new long[2];
+		long[] lTotalNanos = new long[2];
+		// The HotSpot extension of the thread bean reports allocated bytes.
+		com.sun.management.ThreadMXBean objThreads =
+			(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long lThreadId = Thread.currentThread().getId();
+
+		System.out.println( "position\tboard\tnodes\tms\tnodes/s\tbytes/node\tmove" );
+		for( int i=0; i<POSITIONS.length; i++ )
+		{
+			int[][] nBoardData = MakeBoardData( objGeometry, POSITIONS[i] );
+			int nPiece = POSITIONS[i].length() % 2 == 0 ? Connect4.RED : Connect4.YELLOW;
+
+			for( int nMode=0; nMode<2; nMode++ )
+			{
+				MiniMax objMiniMax = new MiniMax();
+				objMiniMax.m_nMaxPly = nMaxPly;
+				objMiniMax.SetUseBitBoard( nMode == 1 );
+				objMiniMax.SetGeometry( objGeometry );
+				objMiniMax.SetKeepTable( false );
+				Position pos = new Position();
+
+				// Warm up, then time the same search.
+				objMiniMax.GetMove( pos, nBoardData, nPiece );
+				long lBytes = objThreads.getThreadAllocatedBytes( lThreadId );
+				long lStart = System.nanoTime();
+				objMiniMax.GetMove( pos, nBoardData, nPiece );
+				long lNanos = System.nanoTime() - lStart;
+				lBytes = objThreads.getThreadAllocatedBytes( lThreadId ) - lBytes;
+
+				long lNodes = objMiniMax.GetNodeCount();
+				lTotalNodes[nMode] += lNodes;
+				lTotalNanos[nMode] += lNanos;
+				System.out.println( "\"" + POSITIONS[i] + "\"\t" + ( nMode == 1 ? "bits" : "array" )
+					+ "\t" + lNodes + "\t" + ( lNanos / 1000000 ) + "\t" + NodesPerSecond( lNodes, lNanos )
+					+ "\t" + String.format( "%.3f", (double)lBytes / Math.max( lNodes, 1 ) )
+					+ "\t" + ( pos.Col + 1 ) );
+			}
+		}
+		System.out.println( "total array board: " + NodesPerSecond( lTotalNodes[0], lTotalNanos[0] ) + " nodes/s" );
+		System.out.println( "total bitboard:    " + NodesPerSecond( lTotalNodes[1], lTotalNanos[1] ) + " nodes/s" );
+	}
+
+	static long NodesPerSecond( long lNodes, long lNanos )
+	{
+		return( lNanos == 0 ? 0 : lNodes * 1000000000L / lNanos );
+	}
+
+	// Build the board data for a sequence of columns (1-7), starting with RED.
+	static int[][] MakeBoardData( String strMoves )
+	{
+		return( MakeBoardData( Geometry.STANDARD, strMoves ) );
+	}
+
+	// The same on a board of a geometry.
+	static int[][] MakeBoardData( Geometry objGeometry, String strMoves )
+	{
+		BitBoard brd = new BitBoard( objGeometry );
+		int nPiece = Connect4.RED;
+		for( int i=0; i<strMoves.length(); i++ )
+		{
+			brd.MakeMove( strMoves.charAt( i ) - '1', nPiece );
+			nPiece ^= 1;
+		}
+		return( brd.GetBoardData() );
+	}
+}
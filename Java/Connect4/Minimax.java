@@ -8,26 +8,305 @@
   * would be for a player to reach that position. The player then makes the move that 
   * maximizes the minimum value of the position resulting from the opponent's possible 
   * following moves.
-  * Dependencies: Connect4.java, Board.java, Position.java
+  * <p>
+  * The search runs on a BitBoard, playing and taking back moves in place. The
+  * original search over the array Board is kept for comparison and can be 
+  * selected with SetUseBitBoard(false).
+  * <p>
+  * Results of the bitboard search are cached in a transposition table keyed
+  * by the position's Zobrist key. Alpha-beta only proves a bound on the score
+  * of a position whose search was cut off, so each entry records whether its
+  * score is exact, a lower bound or an upper bound, and a cached bound is only
+  * used to narrow the window.
+  * <p>
+  * With a time budget, GetMove() searches by iterative deepening: depth 1, 2,
+  * 3, ... until the budget runs out, playing the move of the deepest search
+  * that completed. This keeps the time per move predictable however complex
+  * the position is.
+  * <p>
+  * With more than one thread, the search is Lazy SMP: helper searches run the
+  * same position on other threads, sharing only the transposition table, for
+  * as long as the main search runs. They fill the table with results that the
+  * main search then finds instead of searching, and since the helpers search
+  * at staggered depths they reach different parts of the tree first.
+  * <p>
+  * Alpha-beta cuts off most when the best move is searched first, so the
+  * moves of each node are ordered: the previous iteration's principal
+  * variation, then the best move in the transposition table, then the killer
+  * moves of the ply, then by history, and from the centre out.
+  * <p>
+  * The transposition table is kept from move to move, its entries aging out
+  * as new searches replace them, and the principal variation of the last
+  * search is searched first again when the game has followed it. Between
+  * moves the search can ponder: search the position it expects to be asked
+  * for next on a thread of its own, leaving the results in the table.
+  * <p>
+  * Given an OpeningBook, GetMove() plays from the book while the position is
+  * in it, and given a Solver, it plays perfectly instead of searching.
+  * <p>
+  * The search plays on the standard board unless it is given another
+  * Geometry (see SetGeometry()). The book and the solver are only used on
+  * the standard board.
+  * <p>
+  * Every search is added to the SearchStats of the program, for JMX and JFR.
+  * Dependencies: Connect4.java, Board.java, BitBoard.java, Geometry.java,
+  *   Position.java, TranspositionTable.java, OpeningBook.java, Solver.java,
+  *   SearchStats.java, Searcher.java
   */
   
 package connect4;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public class MiniMax 
+public class MiniMax implements Searcher
 {
-	// hashmap containing previously explored board states
-	HashMap<Board, Integer> m_hmBoardState;
+	// The deepest a search can go: a game never lasts more moves than the
+	//   largest board has squares.
+	static final int MAX_PLY = Geometry.MAX_SQUARES;
+	// A move list for each ply, so that the search does not allocate. Large
+	//   enough for both the (row, col) pairs of the array board search and the
+	//   columns of the bitboard search.
+	int[][] m_nMoveBuffers = new int[MAX_PLY + 1][Geometry.MAX_WIDTH * 2];
+	// The geometry of the board searched.
+	Geometry m_objGeometry = Geometry.STANDARD;
+	// The transposition table, 2^20 entries, kept from search to search.
+	TranspositionTable m_objTT = new TranspositionTable( 20 );
+	// Keep the table from move to move (true), or clear it before every
+	//   search, and the geometry its entries are for.
+	boolean m_bKeepTable = true;
+	Geometry m_objTableGeometry;
+	// XORed into the table keys when YELLOW is the search piece. Scores are
+	//   for the search piece, so the searches for each side keep their own
+	//   entries.
+	static final long SEARCH_YELLOW_KEY = 0x9E3779B97F4A7C15L;
+	long m_lSearchKey;
 	// Maximum ply (search depth)
 	int m_nMaxPly = 7;
 	//  This is the piece to search for. Should be either RED or YELLOW.
 	int m_nSearchPiece = 0;
+	// Search on the bitboard (true) or on the original array board (false).
+	boolean m_bUseBitBoard = true;
+	// The number of nodes visited by the last search.
+	long m_lNodes;
+	// The time budget per move in milliseconds, or 0 to search m_nMaxPly deep.
+	long m_lTimeBudget = 0;
+	// The depth of the search in progress: m_nMaxPly, capped at MAX_PLY, or
+	//   the depth of the current iteration of a timed search.
+	int m_nDepthLimit;
+	// The depth of the last completed search, or of the last completed
+	//   iteration of a timed search.
+	int m_nCompletedDepth;
+	// The score of the move found by the last search, for the search piece,
+	//   and whether it is an exact score from the book or the solver (see
+	//   Solver) rather than a heuristic one.
+	int m_nScore;
+	boolean m_bExactScore;
+	// The System.nanoTime() at which the search gives up, or 0 for none.
+	long m_lDeadline;
+	// Set once the search has given up, to unwind it.
+	boolean m_bAborted;
+	// The principal variation (the line the search expects to be played)
+	//   from each ply, in a triangular array: m_nPV[ply] holds the moves from
+	//   index ply up to m_nPVLength[ply].
+	int[][] m_nPV = new int[MAX_PLY + 1][MAX_PLY + 1];
+	int[] m_nPVLength = new int[MAX_PLY + 1];
+	// The principal variation of the last completed search, and whether the
+	//   current node is still on it.
+	int[] m_nPrevPV = new int[MAX_PLY + 1];
+	int m_nPrevPVLength;
+	boolean m_bFollowPV;
+	// The position the last principal variation starts from, and the side
+	//   to move there, to carry the variation over to the next search.
+	BitBoard m_objPVBoard;
+	int m_nPVPiece;
+	// Pondering: the search that runs between moves, its thread, and the
+	//   position it searches.
+	MiniMax m_objPonder;
+	ExecutorService m_objPonderPool;
+	Future<?> m_objPonderFuture;
+	BitBoard m_objPonderBoard;
+	int m_nPonderPiece;
+	// The number of search threads, the helper searches for threads 2..n and
+	//   the pool they run on, created on first use.
+	int m_nThreads = 1;
+	MiniMax[] m_objHelpers = new MiniMax[0];
+	ExecutorService m_objPool;
+	// Set to stop the helper searches; shared by a search and its helpers.
+	AtomicBoolean m_objStop = new AtomicBoolean();
+	// Order the moves of the bitboard search (true), or search them from
+	//   left to right (false).
+	boolean m_bMoveOrdering = true;
+	// The columns of the standard board from the centre out. A centre piece
+	//   takes part in more lines, so centre moves tend to be better.
+	static final int[] CENTRE_ORDER = Geometry.STANDARD.m_nCentreOrder;
+	// The killer moves of each ply: the last two columns that caused a
+	//   cut-off there, most recent first, or -1.
+	int[][] m_nKillers = new int[MAX_PLY + 1][2];
+	// The history heuristic: how often, weighted by depth, dropping a piece of
+	//   a side on a square caused a cut-off. Indexed by side and bit.
+	int[][] m_nHistory = new int[2][Geometry.MAX_SQUARES];
+	// The history is halved once an entry grows past this.
+	static final int HISTORY_LIMIT = 1 << 20;
+	// The ordering scores of the moves of each ply, preallocated.
+	int[][] m_nMoveScores = new int[MAX_PLY + 1][Geometry.MAX_WIDTH];
+	// The nodes visited, the cut-offs, and the cut-offs on the first move
+	//   searched, at each ply of the last bitboard search.
+	long[] m_lNodesPerPly = new long[MAX_PLY + 1];
+	long[] m_lCutoffsPerPly = new long[MAX_PLY + 1];
+	long[] m_lFirstMoveCutoffsPerPly = new long[MAX_PLY + 1];
+	// The transposition table probes, and the probes that found the
+	//   position, of the last bitboard search.
+	long m_lTableProbes;
+	long m_lTableHits;
+	// The nodes visited at each ply by the last completed iteration of the
+	//   bitboard search: m_lNodesPerPly adds up all the iterations of a timed
+	//   search, each of which starts again from the root.
+	long[] m_lIterationNodesPerPly = new long[MAX_PLY + 1];
+	// m_lNodesPerPly when the current iteration started.
+	long[] m_lIterationStart = new long[MAX_PLY + 1];
+	// The opening book, or null for none.
+	OpeningBook m_objBook;
+	// The solver for perfect play, or null to search heuristically.
+	Solver m_objSolver;
 	
+	// Choose between the bitboard search and the original array board search.
+	public void SetUseBitBoard( boolean bUseBitBoard )
+	{
+		m_bUseBitBoard = bUseBitBoard;
+	}
+
+	// Search by iterative deepening for up to lMillis per move, or search
+	//   m_nMaxPly deep if lMillis is 0.
+	public void SetTimeBudget( long lMillis )
+	{
+		m_lTimeBudget = lMillis;
+	}
+
+	// Set the number of threads to search with.
+	public void SetThreads( int nThreads )
+	{
+		m_nThreads = max( nThreads, 1 );
+	}
+
+	// Get the number of nodes visited by the last search, on all threads.
+	public long GetNodeCount()
+	{
+		long lNodes = m_lNodes;
+		for( int i=0; i<m_objHelpers.length; i++ )
+		{
+			lNodes += m_objHelpers[i].m_lNodes;
+		}
+		return( lNodes );
+	}
+
+	// Play from an opening book while the position is in it, or null for none.
+	public void SetOpeningBook( OpeningBook objBook )
+	{
+		m_objBook = objBook;
+	}
+
+	// Play perfectly with a solver, or null to search heuristically. Solving
+	//   the first moves of a game takes long, so use it with an opening book.
+	public void SetSolver( Solver objSolver )
+	{
+		m_objSolver = objSolver;
+	}
+
+	// Replace the transposition table, shared with the helper threads, with
+	//   an empty one of 2^nBits entries (16 bytes each; the default is 2^20).
+	public void SetTableBits( int nBits )
+	{
+		StopPondering();
+		m_objTT = new TranspositionTable( nBits );
+		m_objTableGeometry = null;
+		for( int i=0; i<m_objHelpers.length; i++ )
+		{
+			m_objHelpers[i].m_objTT = m_objTT;
+		}
+	}
+
+	// Keep the transposition table and the principal variation from move to
+	//   move (true), or start every search afresh, as when timing searches.
+	public void SetKeepTable( boolean bKeepTable )
+	{
+		m_bKeepTable = bKeepTable;
+	}
+
+	// Search on a board of a geometry. The board data passed to GetMove()
+	//   must then be rows x columns of the geometry.
+	public void SetGeometry( Geometry objGeometry )
+	{
+		m_objGeometry = objGeometry;
+	}
+
+	// Get the geometry of the board searched.
+	public Geometry GetGeometry()
+	{
+		return( m_objGeometry );
+	}
+
+	// Order the moves of the bitboard search, or search them left to right.
+	public void SetMoveOrdering( boolean bMoveOrdering )
+	{
+		m_bMoveOrdering = bMoveOrdering;
+	}
+
+	// Get the nodes visited at each ply of the last search, on all threads.
+	public long[] GetNodesPerPly()
+	{
+		long[] lNodes = m_lNodesPerPly.clone();
+		for( int i=0; i<m_objHelpers.length; i++ )
+		{
+			for( int ply=0; ply<=MAX_PLY; ply++ )
+			{
+				lNodes[ply] += m_objHelpers[i].m_lNodesPerPly[ply];
+			}
+		}
+		return( lNodes );
+	}
+
+	// Get the cut-offs at each ply of the last search, on the main thread.
+	public long[] GetCutoffsPerPly()
+	{
+		return( m_lCutoffsPerPly.clone() );
+	}
+
+	// Get the cut-offs on the first move searched at each ply of the last
+	//   search, on the main thread. The closer to GetCutoffsPerPly() the
+	//   better the moves were ordered.
+	public long[] GetFirstMoveCutoffsPerPly()
+	{
+		return( m_lFirstMoveCutoffsPerPly.clone() );
+	}
+
+	// Get the effective branching factor of the last completed iteration of
+	//   the last search on the main thread: the number of children searched
+	//   per node, averaged over the plies as the d-th root of (nodes at the
+	//   deepest ply d / nodes at the root).
+	public double GetEffectiveBranchingFactor()
+	{
+		long[] lNodes = m_lIterationNodesPerPly;
+		int nDeepest = 0;
+		while( nDeepest < MAX_PLY && lNodes[nDeepest + 1] != 0 )
+		{
+			nDeepest++;
+		}
+		if( nDeepest == 0 )
+		{
+			return( 0 );
+		}
+		return( Math.pow( (double)lNodes[nDeepest] / lNodes[0], 1.0 / nDeepest ) );
+	}
+
 	// Set the piece for which a move will be found.
 	public void SetSearchPiece( int nPiece )
 	{
 		m_nSearchPiece = nPiece;
+		m_lSearchKey = ( nPiece == Connect4.YELLOW ) ? SEARCH_YELLOW_KEY : 0;
 	}
         
 	boolean isMaximizingPlayer(int nPiece)
@@ -50,17 +329,18 @@ public class MiniMax
 	{
 		int row, col;
 		int nNumMoves = 0;
+		int nLastRow = nBoardData.length - 1;
 
-		// Loop through six rows.
-		for( row=0; row<=5; row++ )
+		// Loop through the rows.
+		for( row=0; row<=nLastRow; row++ )
 		{
-			// Loop through seven columns.
-			for( col=0; col<=6; col++ )
+			// Loop through the columns.
+			for( col=0; col<nBoardData[row].length; col++ )
 			{
 				// If the board at this location is empty,
 				//   then this square is a legal move.
 				if( nBoardData[row][col] == Connect4.EMPTY &&
-					( row == 5 || nBoardData[row+1][col] != Connect4.EMPTY ) )
+					( row == nLastRow || nBoardData[row+1][col] != Connect4.EMPTY ) )
 				{
 					// Put the row and column in the move list array.
 					nMoveList[nNumMoves*2] = row;
@@ -85,16 +365,11 @@ public class MiniMax
 	{
 		// the current value
 		int nValue;
-		// Local arrays for the legal move list and the result list.
-		int[] nMoveList = new int[7*2];
+		// The legal move list, preallocated for this ply.
+		int[] nMoveList = m_nMoveBuffers[nDepth];
 		// the result of exploring a possible move
 		int nResult;
-            
-		// if the current board state has been previously explored, return it
-		if(m_hmBoardState.containsKey(pBoard) && nDepth != 0)
-		{
-			return m_hmBoardState.get(pBoard);
-		}
+		m_lNodes++;
             
 		// First, check if a side has won.
 		if( pBoard.DidSideWin( nPiece ) )
@@ -113,12 +388,10 @@ public class MiniMax
 		{
 			return( 0 ); // Score for Cats game is 0.
 		}
-		// If we are at a leaf node, hash the new board state and return the score.
-		else if( nDepth >= m_nMaxPly )
+		// If we are at a leaf node, return the score.
+		else if( nDepth >= m_nDepthLimit )
 		{
-			int score = ScoreIt( m_nSearchPiece, pBoard.GetBoardData() );
-			m_hmBoardState.put(pBoard, score);
-			return score;
+			return( pBoard.GetScore( m_nSearchPiece ) );
 		}
 
 		// Get the legal moves.
@@ -136,14 +409,14 @@ public class MiniMax
 			// Loop through the legal moves.
 			for( int i=0; i<nMoves; i++ )
 			{
-				// We need a board clone so that we can place pieces
-				//   without messing up previous board positions.
-				Board SaveMe = pBoard.Clone();
 				// Place the piece from the current move contained in the move list.
 				pBoard.PlacePiece( nMoveList[i*2], nMoveList[i*2+1], nPiece );
 
 				// Call DoSearch() recursively.
 				nResult = DoSearch(pos, pBoard, nDepth + 1, nAlpha, nBeta, nPiece ^ 1);
+
+				// Take the piece back off the board.
+				pBoard.RemovePiece( nMoveList[i*2], nMoveList[i*2+1] );
 				if( nResult > nValue && nDepth == 0 )
 				{
 					pos.Row = nMoveList[i*2];
@@ -154,9 +427,6 @@ public class MiniMax
 				nValue = max( nValue, nResult );
 				nAlpha = max( nAlpha, nValue );
                     
-				// Restore the board.
-				pBoard = SaveMe.Clone();
-                    
 				// check for beta cut-off
 				if( nBeta <= nAlpha )
 				{
@@ -173,23 +443,19 @@ public class MiniMax
 			// Loop through the legal moves.
 			for( int i=0; i<nMoves; i++ )
 			{
-				// We need a board clone so that we can place pieces
-				//   without messing up previous board positions.
-				Board SaveMe = pBoard.Clone();
-			
 				// Place the piece from the current move in the list.
 				pBoard.PlacePiece( nMoveList[i*2], nMoveList[i*2+1], nPiece );
                 
 				// Call DoSearch() recursively.
 				nResult = DoSearch( pos, pBoard, nDepth + 1, nAlpha, nBeta, nPiece ^ 1);
 
+				// Take the piece back off the board.
+				pBoard.RemovePiece( nMoveList[i*2], nMoveList[i*2+1] );
+
 				// Check to see if this result is less than the current value
 				nValue = min(nValue, nResult);
 				nBeta = min(nBeta, nValue);
 			
-				// Restore the board.
-				pBoard = SaveMe.Clone();
-                    
 				// check alpha cut-off
 				if( nBeta <= nAlpha )
 				{
@@ -200,220 +466,813 @@ public class MiniMax
 		}	
 	}
 
-	// Wrapper method that sets off minimax to get a move.
-	public void GetMove( Position pos, int[][] BoardData, int nPiece )
+	// Compile a list of legal moves (columns) on the bitboard, from the
+	//   centre out when ordering moves.
+	int GetLegalMoves( BitBoard pBoard, int[] nMoveList )
 	{
-		// Set the search piece.
-		SetSearchPiece( nPiece );
-		
-		// Create a new board with this board data.
-		Board brd = new Board();
-		brd.SetBoardData( BoardData );
+		int[] nCentreOrder = pBoard.m_objGeometry.m_nCentreOrder;
+		int nNumMoves = 0;
+		for( int i=0; i<nCentreOrder.length; i++ )
+		{
+			int col = m_bMoveOrdering ? nCentreOrder[i] : i;
+			if( pBoard.CanPlay( col ) )
+			{
+				nMoveList[nNumMoves++] = col;
+			}
+		}
+		return( nNumMoves );
+	}
 
-		// Call the recursive method.
-		DoSearch( pos, brd, 0, (int)Double.NEGATIVE_INFINITY, 
-              (int)Double.POSITIVE_INFINITY, nPiece );
+	// Sort the moves of a ply, best first: the transposition table's best
+	//   move, then the killer moves, then the rest by their history score.
+	//   The sort is stable, so moves that score the same stay centre first.
+	void OrderMoves( BitBoard pBoard, int[] nMoveList, int nMoves, int nDepth, int nPiece, int nTTMove )
+	{
+		int[] nScores = m_nMoveScores[nDepth];
+		int[] nKillers = m_nKillers[nDepth];
+		int[] nHistory = m_nHistory[nPiece];
+		int nColumnBits = pBoard.m_objGeometry.m_nColumnBits;
+		for( int i=0; i<nMoves; i++ )
+		{
+			int nCol = nMoveList[i];
+			int nScore = ( nCol == nTTMove ) ? 1 << 30
+				: ( nCol == nKillers[0] ) ? 1 << 29
+				: ( nCol == nKillers[1] ) ? 1 << 28
+				: nHistory[nCol * nColumnBits + pBoard.GetHeight( nCol )];
+
+			// Insertion sort; there are only as many moves as columns.
+			int j = i;
+			while( j > 0 && nScores[j - 1] < nScore )
+			{
+				nScores[j] = nScores[j - 1];
+				nMoveList[j] = nMoveList[j - 1];
+				j--;
+			}
+			nScores[j] = nScore;
+			nMoveList[j] = nCol;
+		}
 	}
-	
-  // Scores are assigned based on the board state wrt the current piece (player)
-  //   of interest, and points are assigned based on the number of two, three, 
-  //   and four consecutive sequences of that piece, as well as the difference 
-  //   in positional advantages between players. 
-	int ScoreIt( int nPiece, int[][] BoardData )
-	{
-		int Twos = 0;
-		int Threes = 0;
-		int Fours = 0 ;
-		
-		for( int nRow=0; nRow<6; nRow++ )
-		{
-			int nCount = 0;
-			for( int nCol=0; nCol<7; nCol++ )
-			{
-				if( BoardData[nRow][nCol] == nPiece )
-				{
-					nCount++;
-				}
-				else
-				{
-					if( nCount == 2 )
-					{
-						Twos++;
-					}
-					else if( nCount == 3 )
-					{
-						Threes++;
-					}
-					else if( nCount == 4 )
-					{
-						Fours++;
-					}
-					nCount = 0;
-				}
+
+	// Remember a move that caused a cut-off, as a killer move of its ply and
+	//   in the history, weighted by the number of plies searched below it.
+	void RecordCutoff( BitBoard pBoard, int nDepth, int nPiece, int nCol, int nPlies )
+	{
+		int[] nKillers = m_nKillers[nDepth];
+		if( nKillers[0] != nCol )
+		{
+			nKillers[1] = nKillers[0];
+			nKillers[0] = nCol;
+		}
+
+		int[] nHistory = m_nHistory[nPiece];
+		int nBit = nCol * pBoard.m_objGeometry.m_nColumnBits + pBoard.GetHeight( nCol );
+		nHistory[nBit] += nPlies * nPlies;
+		if( nHistory[nBit] > HISTORY_LIMIT )
+		{
+			for( int i=0; i<nHistory.length; i++ )
+			{
+				nHistory[i] /= 2;
 			}
-			if( nCount == 2 )
+		}
+	}
+
+	// Forget the killer moves, the history and the per-ply counters of the
+	//   last search.
+	void ResetSearchData()
+	{
+		for( int ply=0; ply<=MAX_PLY; ply++ )
+		{
+			m_nKillers[ply][0] = -1;
+			m_nKillers[ply][1] = -1;
+			m_lNodesPerPly[ply] = 0;
+			m_lCutoffsPerPly[ply] = 0;
+			m_lFirstMoveCutoffsPerPly[ply] = 0;
+			m_lIterationNodesPerPly[ply] = 0;
+			m_lIterationStart[ply] = 0;
+		}
+		m_lTableProbes = 0;
+		m_lTableHits = 0;
+		Arrays.fill( m_nHistory[0], 0 );
+		Arrays.fill( m_nHistory[1], 0 );
+	}
+
+	// Keep the nodes per ply of the iteration just completed, and start
+	//   counting the next one.
+	void EndIteration()
+	{
+		for( int ply=0; ply<=MAX_PLY; ply++ )
+		{
+			m_lIterationNodesPerPly[ply] = m_lNodesPerPly[ply] - m_lIterationStart[ply];
+			m_lIterationStart[ply] = m_lNodesPerPly[ply];
+		}
+	}
+
+	// Recursive method that searches for the best move on the bitboard. The
+	//   parameters are the same as for the array board, but the moves are
+	//   played and taken back in place instead of cloning the board. The
+	//   search goes m_nDepthLimit plies deep, and gives up (returning 0) once
+	//   the deadline of a timed search has passed.
+	int DoSearch( Position pos, BitBoard pBoard, int nDepth, int nAlpha, int nBeta, int nPiece )
+	{
+		// the current value
+		int nValue;
+		// The legal move list (columns), preallocated for this ply.
+		int[] nMoveList = m_nMoveBuffers[nDepth];
+		// the result of exploring a possible move
+		int nResult;
+		m_lNodes++;
+		m_lNodesPerPly[nDepth]++;
+		// The principal variation from this node starts out empty.
+		m_nPVLength[nDepth] = nDepth;
+
+		// Check the clock and the stop flag every 1024 nodes.
+		if( ( m_lNodes & 1023 ) == 0 
+			&& ( m_objStop.get() || ( m_lDeadline != 0 && System.nanoTime() >= m_lDeadline ) ) )
+		{
+			m_bAborted = true;
+		}
+		if( m_bAborted )
+		{
+			return( 0 );
+		}
+
+		// First, check if the side that just moved has won.
+		if( pBoard.DidSideWin( nPiece ^ 1 ) )
+		{
+			if( ( nPiece ^ 1 ) == m_nSearchPiece )
 			{
-				Twos++;
+				return( (int)Double.POSITIVE_INFINITY );
+			}
+			else
+			{
+				return( (int)Double.NEGATIVE_INFINITY );
+			}
+		}
+		// See if we have a Cats game.
+		else if( pBoard.IsCatsGame() )
+		{
+			return( 0 ); // Score for Cats game is 0.
+		}
+		// If we are at a leaf node, return the score.
+		else if( nDepth >= m_nDepthLimit )
+		{
+			return( pBoard.ScoreIt( m_nSearchPiece ) );
+		}
+
+		// Look the position up in the transposition table. A result searched
+		//   at least as deep either answers this node or narrows the window.
+		//   The root always searches, since it has to set the move. If the
+		//   evaluation is symmetric a position and its mirror image share an
+		//   entry, and its move is stored for the one with the smaller key.
+		boolean bSymmetric = pBoard.m_objGeometry.m_bSymmetric;
+		boolean bMirrored = bSymmetric && pBoard.IsMirrored();
+		long lKey = ( bSymmetric ? pBoard.GetCanonicalHash( nPiece ) : pBoard.GetHash( nPiece ) ) ^ m_lSearchKey;
+		int nPlies = m_nDepthLimit - nDepth;
+		long lEntry = m_objTT.Probe( lKey );
+		m_lTableProbes++;
+		if( lEntry != 0 )
+		{
+			m_lTableHits++;
+		}
+		if( lEntry != 0 && nDepth != 0 && TranspositionTable.GetDepth( lEntry ) >= nPlies )
+		{
+			int nScore = TranspositionTable.GetScore( lEntry );
+			int nBound = TranspositionTable.GetBound( lEntry );
+			if( nBound == TranspositionTable.EXACT )
+			{
+				return( nScore );
+			}
+			else if( nBound == TranspositionTable.LOWER_BOUND )
+			{
+				nAlpha = max( nAlpha, nScore );
 			}
-			else if( nCount == 3 )
+			else
 			{
-				Threes++;
+				nBeta = min( nBeta, nScore );
 			}
-			else if( nCount == 4 )
+			if( nBeta <= nAlpha )
 			{
-				Fours++;
+				return( nScore );
 			}
 		}
-		
-		for( int nCol=0; nCol<7; nCol++ )
+		// The window the children are searched with, to classify the result.
+		int nAlphaSearched = nAlpha;
+		int nBetaSearched = nBeta;
+		int nBestMove = -1;
+
+		// Get the legal moves.
+		int nMoves = GetLegalMoves( pBoard, nMoveList );
+		if( m_bMoveOrdering )
 		{
-			int nCount = 0;
-			for( int nRow=0; nRow<6; nRow++ )
+			int nTableMove = ( lEntry != 0 ) ? TranspositionTable.GetMove( lEntry ) : -1;
+			if( bMirrored && nTableMove >= 0 )
 			{
-				if( BoardData[nRow][nCol] == nPiece )
-				{
-					nCount++;
-				}
-				else
+				nTableMove = pBoard.Mirror( nTableMove );
+			}
+			OrderMoves( pBoard, nMoveList, nMoves, nDepth, nPiece, nTableMove );
+		}
+
+		// While still on the principal variation of the previous iteration,
+		//   search its move first; only that child stays on it.
+		boolean bOnPV = m_bFollowPV && nDepth < m_nPrevPVLength
+			&& MoveToFront( nMoveList, nMoves, m_nPrevPV[nDepth] );
+
+		if( nDepth == 0 )
+		{
+			SetPosition( pos, pBoard, nMoveList[0] );
+		}
+
+		boolean bMaximizing = isMaximizingPlayer( nPiece );
+		nValue = bMaximizing ? (int)Double.NEGATIVE_INFINITY : (int)Double.POSITIVE_INFINITY;
+		for( int i=0; i<nMoves; i++ )
+		{
+			int nCol = nMoveList[i];
+			m_bFollowPV = bOnPV && i == 0;
+
+			// Play the move, search it, and take it back.
+			pBoard.MakeMove( nCol, nPiece );
+			nResult = DoSearch( pos, pBoard, nDepth + 1, nAlpha, nBeta, nPiece ^ 1 );
+			pBoard.UnmakeMove( nCol );
+			if( m_bAborted )
+			{
+				return( 0 );
+			}
+
+			// If this is the maximizing player of minimax, keep the max,
+			//   otherwise the min.
+			if( nBestMove < 0 || ( bMaximizing ? nResult > nValue : nResult < nValue ) )
+			{
+				nBestMove = nCol;
+				nValue = nResult;
+				UpdatePV( nDepth, nCol );
+				if( nDepth == 0 )
 				{
-					if( nCount == 2 )
-					{
-						Twos++;
-					}
-					else if( nCount == 3 )
-					{
-						Threes++;
-					}
-					else if( nCount == 4 )
-					{
-						Fours++;
-					}
-					nCount = 0;
+					SetPosition( pos, pBoard, nCol );
 				}
 			}
-			if( nCount == 2 )
+			if( bMaximizing )
 			{
-				Twos++;
+				nAlpha = max( nAlpha, nValue );
 			}
-			else if( nCount == 3 )
+			else
 			{
-				Threes++;
+				nBeta = min( nBeta, nValue );
 			}
-			else if( nCount == 4 )
+
+			// check for cut-off
+			if( nBeta <= nAlpha )
 			{
-				Fours++;
+				m_lCutoffsPerPly[nDepth]++;
+				if( i == 0 )
+				{
+					m_lFirstMoveCutoffsPerPly[nDepth]++;
+				}
+				if( m_bMoveOrdering )
+				{
+					RecordCutoff( pBoard, nDepth, nPiece, nCol, nPlies );
+				}
+				break;
 			}
 		}
-		
-		// Loop through the diagonal data.
-		for( int nDiagonalTest=0; nDiagonalTest<Board.m_nDiagonalData.length/4; nDiagonalTest++)
+
+		// A score outside the window only bounds the true score.
+		int nBound = ( nValue <= nAlphaSearched ) ? TranspositionTable.UPPER_BOUND
+			: ( nValue >= nBetaSearched ) ? TranspositionTable.LOWER_BOUND
+			: TranspositionTable.EXACT;
+		m_objTT.Store( lKey, nValue, nPlies, nBound,
+			( bMirrored && nBestMove >= 0 ) ? pBoard.Mirror( nBestMove ) : nBestMove );
+		return( nValue );
+	}
+
+	// Move a column to the front of a move list, keeping the order of the
+	//   others. Returns false if the column is not in the list.
+	static boolean MoveToFront( int[] nMoveList, int nMoves, int nCol )
+	{
+		for( int i=0; i<nMoves; i++ )
 		{
-			int nCount = 0;
-			// Starting row.
-			int nRow = Board.m_nDiagonalData[nDiagonalTest*4];
-			// Starting column.
-			int nCol = Board.m_nDiagonalData[nDiagonalTest*4+1];
-			// YDirection for the iterations.
-			int nYDir = Board.m_nDiagonalData[nDiagonalTest*4+2];
-			// Number of iterations.
-			int nIterations = Board.m_nDiagonalData[nDiagonalTest*4+3];
+			if( nMoveList[i] == nCol )
+			{
+				System.arraycopy( nMoveList, 0, nMoveList, 1, i );
+				nMoveList[0] = nCol;
+				return( true );
+			}
+		}
+		return( false );
+	}
+
+	// Record a new best move at a ply: the principal variation from this
+	//   node is the move followed by the principal variation of the child.
+	void UpdatePV( int nDepth, int nCol )
+	{
+		m_nPV[nDepth][nDepth] = nCol;
+		int nLength = m_nPVLength[nDepth + 1];
+		System.arraycopy( m_nPV[nDepth + 1], nDepth + 1, m_nPV[nDepth], nDepth + 1, nLength - nDepth - 1 );
+		m_nPVLength[nDepth] = nLength;
+	}
+
+	// Set the position of a move into a column, before it is played.
+	static void SetPosition( Position pos, BitBoard pBoard, int nCol )
+	{
+		pos.Row = pBoard.m_objGeometry.m_nRows - 1 - pBoard.GetHeight( nCol );
+		pos.Col = nCol;
+	}
 
-			// Loop through the iterations.
-			for( int i=0; i<nIterations; i++ )
+	// Wrapper method that sets off minimax to get a move, and adds the
+	//   search to the SearchStats.
+	public void GetMove( Position pos, int[][] BoardData, int nPiece )
+	{
+		SearchStats.SearchEvent objEvent = new SearchStats.SearchEvent();
+		objEvent.begin();
+		long lStart = System.nanoTime();
+		FindMove( pos, BoardData, nPiece );
+		long lNanos = System.nanoTime() - lStart;
+
+		// The helpers add their own counts on their threads.
+		SearchStats objStats = SearchStats.Get();
+		SearchStats.Counters objCounters = objStats.Local();
+		objCounters.Add( this );
+		objCounters.m_lSearches++;
+		objCounters.m_lSearchNanos += lNanos;
+		int[] nPV = GetPrincipalVariation();
+		objStats.SetLastSearch( nPV, m_nCompletedDepth, m_nScore );
+
+		objEvent.end();
+		if( objEvent.shouldCommit() )
+		{
+			int nPieces = 0;
+			for( int row=0; row<m_objGeometry.m_nRows; row++ )
 			{
-				// If this is nSide then increment the counter.
-				if( BoardData[nRow][nCol] == nPiece )
+				for( int col=0; col<m_objGeometry.m_nCols; col++ )
 				{
-					// Increment the counter.
-					nCount++;
+					nPieces += ( BoardData[row][col] != Connect4.EMPTY ) ? 1 : 0;
 				}
-				
-				// This square does not equal nSide.
-				else
+			}
+			objEvent.pieces = nPieces;
+			objEvent.move = pos.Col;
+			objEvent.score = m_nScore;
+			objEvent.depth = m_nCompletedDepth;
+			objEvent.nodes = GetNodeCount();
+			objEvent.tableProbes = m_lTableProbes;
+			objEvent.tableHits = m_lTableHits;
+			objEvent.pv = SearchStats.FormatPV( nPV );
+			objEvent.commit();
+		}
+	}
+
+	// Find a move with the book, the solver, the bitboard search or the
+	//   array board search.
+	void FindMove( Position pos, int[][] BoardData, int nPiece )
+	{
+		boolean bPondered = StopPondering();
+		SearchStats.Warm();
+
+		// Set the search piece.
+		SetSearchPiece( nPiece );
+		m_lNodes = 0;
+		ResetSearchData();
+
+		if( m_bUseBitBoard )
+		{
+			// Create a new bitboard with this board data.
+			BitBoard brd = new BitBoard( m_objGeometry );
+			brd.SetBoardData( BoardData );
+
+			// Play from the book, or the solver, if there is one. Both only
+			//   know the standard board.
+			int nCol = -1;
+			boolean bStandard = m_objGeometry.IsStandard();
+			if( m_objBook != null && bStandard )
+			{
+				nCol = m_objBook.GetMove( brd, nPiece );
+				if( nCol >= 0 )
 				{
-					if( nCount == 2 )
-					{
-						Twos++;
-					}
-					else if( nCount == 3 )
-					{
-						Threes++;
-					}
-					else if( nCount == 4 )
-					{
-						Fours++;
-					}
-					
-					// Reset the counter.
-					nCount = 0;
+					m_nScore = m_objBook.ScoreMove( brd, nPiece, nCol );
 				}
-				
-				// Move the row position.
-				nRow += nYDir;
-				// Move the column position.
-				nCol++;
 			}
-			
-			if( nCount == 2 )
+			if( nCol < 0 && m_objSolver != null && bStandard )
 			{
-				Twos++;
+				long lNodes = m_objSolver.GetNodeCount();
+				nCol = m_objSolver.GetBestMove( brd, nPiece );
+				if( nCol >= 0 )
+				{
+					// The solver finds the bounds it needs in its table.
+					m_nScore = m_objSolver.ScoreMove( brd, nPiece, nCol );
+				}
+				m_lNodes = m_objSolver.GetNodeCount() - lNodes;
 			}
-			else if( nCount == 3 )
+			if( nCol >= 0 )
 			{
-				Threes++;
+				SetPosition( pos, brd, nCol );
+				m_nPrevPV[0] = nCol;
+				m_nPrevPVLength = 1;
+				m_objPVBoard = brd;
+				m_nPVPiece = nPiece;
+				m_nCompletedDepth = 0;
+				m_bExactScore = true;
+				return;
 			}
-			else if( nCount == 4 )
+
+			// A search after pondering is part of the same search, so the
+			//   pondered entries are not replaced any sooner than its own.
+			PrepareTable();
+			if( !bPondered )
 			{
-				Fours++;
+				m_objTT.NewSearch();
 			}
-			
+			if( bPondered && m_objPonderBoard.GetHash( m_nPonderPiece ) == brd.GetHash( nPiece )
+				&& m_nPonderPiece == nPiece && m_objPonder.m_nPrevPVLength > 0 )
+			{
+				// The position pondered: start from its principal variation.
+				m_nPrevPVLength = m_objPonder.m_nPrevPVLength;
+				System.arraycopy( m_objPonder.m_nPrevPV, 0, m_nPrevPV, 0, m_nPrevPVLength );
+			}
+			else
+			{
+				CarryPV( brd, nPiece );
+			}
+			m_bExactScore = false;
+			Future<?>[] objHelpers = StartHelpers( brd, nPiece );
+
+			if( m_lTimeBudget > 0 )
+			{
+				IterativeDeepening( pos, brd, nPiece );
+			}
+			else
+			{
+				// Call the recursive method.
+				m_nDepthLimit = min( m_nMaxPly, MAX_PLY );
+				m_lDeadline = 0;
+				m_bAborted = false;
+				m_bFollowPV = true;
+				long lStart = System.nanoTime();
+				m_nScore = DoSearch( pos, brd, 0, (int)Double.NEGATIVE_INFINITY, 
+					(int)Double.POSITIVE_INFINITY, nPiece );
+				m_nCompletedDepth = m_nDepthLimit;
+				SavePV();
+				EndIteration();
+				SearchStats.Counters objCounters = SearchStats.Get().Local();
+				objCounters.m_lIterations[m_nDepthLimit]++;
+				objCounters.m_lIterationNanos[m_nDepthLimit] += System.nanoTime() - lStart;
+			}
+
+			StopHelpers( objHelpers );
+			m_objPVBoard = brd;
+			m_nPVPiece = nPiece;
+			return;
+		}
+
+		// Create a new board with this board data.
+		Board brd = new Board( m_objGeometry );
+		brd.SetBoardData( BoardData );
+
+		// Call the recursive method.
+		m_nDepthLimit = min( m_nMaxPly, MAX_PLY );
+		m_nScore = DoSearch( pos, brd, 0, (int)Double.NEGATIVE_INFINITY, 
+              (int)Double.POSITIVE_INFINITY, nPiece );
+		m_nCompletedDepth = m_nDepthLimit;
+		m_bExactScore = false;
+		m_nPrevPVLength = 0;
+		m_objPVBoard = null;
+	}
+
+	// Clear the transposition table if it is not to be kept, or if its
+	//   entries are for another geometry.
+	void PrepareTable()
+	{
+		if( !m_bKeepTable || m_objTableGeometry != m_objGeometry )
+		{
+			m_objTT.Clear();
+			m_objTableGeometry = m_objGeometry;
 		}
+	}
 
-		int nPositionalAdvantage = 0;
-		for( int nCol=0; nCol<7; nCol++ )
+	// Carry the principal variation of the last search over to a search of
+	//   the position on brd: if the game has followed the variation to this
+	//   position, the rest of it is the line to search first.
+	void CarryPV( BitBoard brd, int nPiece )
+	{
+		int nSkip = 0;
+		BitBoard objBoard = m_objPVBoard;
+		if( m_bKeepTable && objBoard != null && objBoard.m_objGeometry == brd.m_objGeometry )
 		{
-			int nCount = 0;
-			for( int nRow=0; nRow<6; nRow++ )
+			int nMover = m_nPVPiece;
+			while( nSkip < m_nPrevPVLength && objBoard.m_nMoveCount < brd.m_nMoveCount
+				&& objBoard.CanPlay( m_nPrevPV[nSkip] ) )
 			{
-				if( BoardData[nRow][nCol] == nPiece )
-				{
-					nCount++;
-				}
+				objBoard.MakeMove( m_nPrevPV[nSkip++], nMover );
+				nMover ^= 1;
 			}
-			
-			if( nCol == 2 || nCol == 3 )
+			if( nMover != nPiece || objBoard.GetHash( nMover ) != brd.GetHash( nPiece ) )
 			{
-				nPositionalAdvantage += nCount * 2;
+				nSkip = m_nPrevPVLength;
 			}
-			else if( nCol == 1 || nCol == 4 )
+		}
+		else
+		{
+			nSkip = m_nPrevPVLength;
+		}
+		m_nPrevPVLength -= nSkip;
+		System.arraycopy( m_nPrevPV, nSkip, m_nPrevPV, 0, m_nPrevPVLength );
+		m_objPVBoard = null;
+	}
+
+	// Ponder: search a position in the background until the next GetMove()
+	//   or StopPondering(). It should be the position the next GetMove() is
+	//   expected to be for, with nPiece to move; the search leaves its
+	//   results in the transposition table for it.
+	public void StartPondering( int[][] BoardData, int nPiece )
+	{
+		StopPondering();
+		BitBoard brd = new BitBoard( m_objGeometry );
+		brd.SetBoardData( BoardData );
+		if( !m_bUseBitBoard || brd.IsCatsGame()
+			|| brd.DidSideWin( Connect4.RED ) || brd.DidSideWin( Connect4.YELLOW ) )
+		{
+			return;
+		}
+		if( m_objPonder == null )
+		{
+			m_objPonder = new MiniMax();
+			m_objPonderPool = Executors.newSingleThreadExecutor( r -> {
+				Thread objThread = new Thread( r, "MiniMax ponder" );
+				objThread.setDaemon( true );
+				return( objThread );
+			});
+		}
+
+		PrepareTable();
+		m_objTT.NewSearch();
+		MiniMax objPonder = m_objPonder;
+		objPonder.m_objTT = m_objTT;
+		objPonder.SetSearchPiece( nPiece );
+		objPonder.m_bMoveOrdering = m_bMoveOrdering;
+		objPonder.m_lNodes = 0;
+		objPonder.ResetSearchData();
+		// Start from this search's principal variation, if the position is
+		//   on it.
+		objPonder.m_nPrevPVLength = m_nPrevPVLength;
+		System.arraycopy( m_nPrevPV, 0, objPonder.m_nPrevPV, 0, m_nPrevPVLength );
+		objPonder.m_objPVBoard = ( m_objPVBoard != null ) ? m_objPVBoard.Clone() : null;
+		objPonder.m_nPVPiece = m_nPVPiece;
+		objPonder.CarryPV( brd, nPiece );
+
+		m_objPonderBoard = brd.Clone();
+		m_nPonderPiece = nPiece;
+		int nMaxDepth = brd.m_objGeometry.m_nSquares - brd.m_nMoveCount;
+		m_objPonderFuture = m_objPonderPool.submit( () -> objPonder.HelperSearch( brd, nPiece, 0, nMaxDepth ) );
+	}
+
+	// Ponder the position the last search expects next: after the move it
+	//   found and the reply it expects, with the same side to move. Does
+	//   nothing if the principal variation is shorter than that.
+	public void StartPondering()
+	{
+		if( m_objPVBoard == null || m_nPrevPVLength < 2 )
+		{
+			return;
+		}
+		BitBoard brd = m_objPVBoard.Clone();
+		brd.MakeMove( m_nPrevPV[0], m_nPVPiece );
+		if( brd.DidSideWin( m_nPVPiece ) || !brd.CanPlay( m_nPrevPV[1] ) )
+		{
+			return;
+		}
+		brd.MakeMove( m_nPrevPV[1], m_nPVPiece ^ 1 );
+		StartPondering( brd.GetBoardData(), m_nPVPiece );
+	}
+
+	// Start a new game: stop pondering, and clear the transposition table
+	//   and the principal variation kept from the last search.
+	public void NewGame()
+	{
+		StopPondering();
+		m_objTT.Clear();
+		m_objTableGeometry = m_objGeometry;
+		m_nPrevPVLength = 0;
+		m_objPVBoard = null;
+	}
+
+	// Stop pondering and wait for the search to unwind. Returns true if it
+	//   was pondering.
+	public boolean StopPondering()
+	{
+		if( m_objPonderFuture == null )
+		{
+			return( false );
+		}
+		m_objPonder.m_objStop.set( true );
+		try
+		{
+			m_objPonderFuture.get();
+		}
+		catch( Exception e )
+		{
+			e.printStackTrace();
+		}
+		m_objPonder.m_objStop.set( false );
+		m_objPonderFuture = null;
+		return( true );
+	}
+
+	// Get the nodes searched by the last ponder search.
+	public long GetPonderNodeCount()
+	{
+		return( m_objPonder != null ? m_objPonder.m_lNodes : 0 );
+	}
+
+	// Search one ply deeper at a time until the time budget runs out. Each
+	//   iteration searches the principal variation of the previous one first,
+	//   and finds most other positions' best moves in the transposition table,
+	//   so the shallower iterations cost little and make the deeper ones cut
+	//   off sooner. An iteration cut short by the deadline is thrown away.
+	void IterativeDeepening( Position pos, BitBoard brd, int nPiece )
+	{
+		Position objIteration = new Position();
+		int nEmpty = brd.m_objGeometry.m_nSquares - brd.m_nMoveCount;
+		m_nCompletedDepth = 0;
+		m_bAborted = false;
+		SearchStats.Counters objCounters = SearchStats.Get().Local();
+		// The first iteration always completes, so there is always a move.
+		m_lDeadline = 0;
+		long lDeadline = System.nanoTime() + m_lTimeBudget * 1000000L;
+
+		for( int nDepthLimit=1; nDepthLimit<=nEmpty; nDepthLimit++ )
+		{
+			m_nDepthLimit = nDepthLimit;
+			m_bFollowPV = true;
+			SearchStats.IterationEvent objEvent = new SearchStats.IterationEvent();
+			objEvent.begin();
+			long lStart = System.nanoTime();
+			int nValue = DoSearch( objIteration, brd, 0, (int)Double.NEGATIVE_INFINITY,
+				(int)Double.POSITIVE_INFINITY, nPiece );
+			objEvent.end();
+			if( objEvent.shouldCommit() )
 			{
-				nPositionalAdvantage += nCount;
+				objEvent.depth = nDepthLimit;
+				objEvent.nodes = m_lNodes;
+				objEvent.score = nValue;
+				objEvent.completed = !m_bAborted;
+				objEvent.commit();
 			}
-			
+			if( m_bAborted )
+			{
+				break;
+			}
+			objCounters.m_lIterations[nDepthLimit]++;
+			objCounters.m_lIterationNanos[nDepthLimit] += System.nanoTime() - lStart;
+
+			pos.Row = objIteration.Row;
+			pos.Col = objIteration.Col;
+			m_nCompletedDepth = nDepthLimit;
+			m_nScore = nValue;
+			SavePV();
+			EndIteration();
+
+			// Stop once the game is decided, or when out of time.
+			m_lDeadline = lDeadline;
+			if( nValue == (int)Double.POSITIVE_INFINITY || nValue == (int)Double.NEGATIVE_INFINITY
+				|| System.nanoTime() >= lDeadline )
+			{
+				break;
+			}
+		}
+		m_lDeadline = 0;
+	}
+
+	// Start the helper searches of a Lazy SMP search on the pool, each on its
+	//   own copy of the board.
+	Future<?>[] StartHelpers( BitBoard brd, int nPiece )
+	{
+		if( m_objHelpers.length != m_nThreads - 1 )
+		{
+			if( m_objPool != null )
+			{
+				m_objPool.shutdown();
+			}
+			m_objPool = null;
+			m_objHelpers = new MiniMax[m_nThreads - 1];
+			for( int i=0; i<m_objHelpers.length; i++ )
+			{
+				m_objHelpers[i] = new MiniMax();
+				m_objHelpers[i].m_objTT = m_objTT;
+				m_objHelpers[i].m_objStop = m_objStop;
+			}
+		}
+		if( m_objHelpers.length == 0 )
+		{
+			return( new Future<?>[0] );
+		}
+		if( m_objPool == null )
+		{
+			// Daemon threads, so an idle pool does not keep the program alive.
+			m_objPool = Executors.newFixedThreadPool( m_objHelpers.length, r -> {
+				Thread objThread = new Thread( r, "MiniMax helper" );
+				objThread.setDaemon( true );
+				return( objThread );
+			});
 		}
-		for( int nCol=0; nCol<7; nCol++ )
+
+		// A fixed-depth search is helped up to one ply deeper than it goes.
+		int nEmpty = brd.m_objGeometry.m_nSquares - brd.m_nMoveCount;
+		int nMaxDepth = ( m_lTimeBudget > 0 ) ? nEmpty : min( min( m_nMaxPly, MAX_PLY ) + 1, nEmpty );
+		m_objStop.set( false );
+		Future<?>[] objFutures = new Future<?>[m_objHelpers.length];
+		for( int i=0; i<m_objHelpers.length; i++ )
+		{
+			final MiniMax objHelper = m_objHelpers[i];
+			final BitBoard objBoard = brd.Clone();
+			final int nHelper = i;
+			objHelper.SetSearchPiece( nPiece );
+			objHelper.m_bMoveOrdering = m_bMoveOrdering;
+			objHelper.m_lNodes = 0;
+			objHelper.ResetSearchData();
+			objHelper.m_nPrevPVLength = m_nPrevPVLength;
+			System.arraycopy( m_nPrevPV, 0, objHelper.m_nPrevPV, 0, m_nPrevPVLength );
+			objFutures[i] = m_objPool.submit( () -> objHelper.HelperSearch( objBoard, nPiece, nHelper, nMaxDepth ) );
+		}
+		return( objFutures );
+	}
+
+	// Stop the helper searches and wait for them to unwind.
+	void StopHelpers( Future<?>[] objHelpers )
+	{
+		m_objStop.set( true );
+		for( int i=0; i<objHelpers.length; i++ )
 		{
-			int nCount = 0;
-			for( int nRow=0; nRow<6; nRow++ )
+			try
 			{
-				if( BoardData[nRow][nCol] != nPiece )
-				{
-					nCount++;
-				}
+				objHelpers[i].get();
 			}
-			
-			if( nCol == 2 || nCol == 3 )
+			catch( Exception e )
 			{
-				//nPositionalAdvantage -= nCount * 2;
+				e.printStackTrace();
 			}
-			else if( nCol == 1 || nCol == 4 )
+		}
+		m_objStop.set( false );
+	}
+
+	// The search run by a helper thread: iterative deepening until stopped.
+	//   Every other helper starts one ply deeper, so that the helpers are not
+	//   all searching the same depth at the same time.
+	void HelperSearch( BitBoard brd, int nPiece, int nHelper, int nMaxDepth )
+	{
+		Position objIteration = new Position();
+		m_bAborted = false;
+		m_lDeadline = 0;
+		for( int nDepthLimit=1+nHelper%2; nDepthLimit<=nMaxDepth && !m_objStop.get(); nDepthLimit++ )
+		{
+			m_nDepthLimit = nDepthLimit;
+			m_bFollowPV = true;
+			DoSearch( objIteration, brd, 0, (int)Double.NEGATIVE_INFINITY,
+				(int)Double.POSITIVE_INFINITY, nPiece );
+			if( m_bAborted )
 			{
-				//nPositionalAdvantage -= nCount;
+				break;
 			}
+			SavePV();
 		}
-		return( nPositionalAdvantage + Twos + Threes * 2 + Fours * 4 );
+		SearchStats.Get().Local().Add( this );
+	}
+
+	// Keep the principal variation of the last completed search.
+	void SavePV()
+	{
+		m_nPrevPVLength = m_nPVLength[0];
+		System.arraycopy( m_nPV[0], 0, m_nPrevPV, 0, m_nPrevPVLength );
+	}
+
+	// Get the score of the move found by the last search, for the piece that
+	//   moved: a heuristic score (see Geometry), or one of
+	//   (int)Double.POSITIVE_INFINITY and NEGATIVE_INFINITY for a forced win
+	//   or loss, or an exact score if IsExactScore().
+	public int GetScore()
+	{
+		return( m_nScore );
+	}
+
+	// See if the score of the last move is exact (see Solver).
+	public boolean IsExactScore()
+	{
+		return( m_bExactScore );
+	}
+
+	// Get the principal variation (columns) of the last completed search,
+	//   starting with the move found.
+	public int[] GetPrincipalVariation()
+	{
+		int[] nPV = new int[m_nPrevPVLength];
+		System.arraycopy( m_nPrevPV, 0, nPV, 0, m_nPrevPVLength );
+		return( nPV );
 	}
 
+	// Get the depth of the last completed search, or of the last completed
+	//   iteration of a timed search. It is 0 for a move from the book or the
+	//   solver.
+	public int GetCompletedDepth()
+	{
+		return( m_nCompletedDepth );
+	}
+	
   // Used for debugging
 	static String ArrayToString( int[] IntArray )
 	{
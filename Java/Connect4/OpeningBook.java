@@ -0,0 +1,302 @@
+/**
+  * OpeningBook.java
+  * This class holds the exact scores (see Solver) of every position of the
+  * first plies of the game, so that the opening, where solving is slowest,
+  * is played perfectly and at once. It is also the program that generates
+  * the book:
+  * Usage: OpeningBook <book file> <plies> [moves]
+  * which solves every position reachable in up to <plies> moves from the
+  * empty board, or from the position after [moves], the columns (1-7)
+  * played starting with RED. An illegal move, or a game over before the
+  * last move, prints the usage and makes no book.
+  * <p>
+  * The book file is a 16-byte header followed by the positions, all little-
+  * endian:
+  *   magic ("C4B1"), format version, plies, number of positions n (ints),
+  *   keys[n] (longs, ascending), scores[n] (bytes).
+  * The key of a position is the smaller of its Zobrist key and that of its
+  * mirror image, with the side to move (see BitBoard.GetCanonicalHash()), so
+  * a position and its mirror image, which have the same score, are stored
+  * once. Opening a book only maps the file, and a lookup is a binary search
+  * of the mapped keys.
+  * Dependencies: BitBoard.java, Solver.java, Connect4.java, MiniMax.java
+  */
+
+package connect4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class OpeningBook
+{
+	static final int MAGIC = 0x31423443; // "C4B1" in little-endian
+	// Version 1 books were keyed by BitBoard.GetHash().
+	static final int VERSION = 2;
+	static final int HEADER_BYTES = 16;
+	// Returned by Probe() for a position that is not in the book.
+	static final int UNKNOWN = Integer.MIN_VALUE;
+
+	// The mapped keys and scores.
+	LongBuffer m_objKeys;
+	ByteBuffer m_objScores;
+	int m_nCount;
+	int m_nPlies;
+
+	OpeningBook( LongBuffer objKeys, ByteBuffer objScores, int nCount, int nPlies )
+	{
+		m_objKeys = objKeys;
+		m_objScores = objScores;
+		m_nCount = nCount;
+		m_nPlies = nPlies;
+	}
+
+	// Map a book file written by Write().
+	public static OpeningBook Open( Path objPath ) throws IOException
+	{
+		try( FileChannel objChannel = FileChannel.open( objPath, StandardOpenOption.READ ) )
+		{
+			long lSize = objChannel.size();
+			if( lSize < HEADER_BYTES )
+			{
+				throw new IOException( objPath + " is not an opening book" );
+			}
+			// The mapping stays valid after the channel is closed.
+			ByteBuffer objMap = objChannel.map( FileChannel.MapMode.READ_ONLY, 0, lSize )
+				.order( ByteOrder.LITTLE_ENDIAN );
+			int nMagic = objMap.getInt( 0 );
+			int nVersion = objMap.getInt( 4 );
+			int nPlies = objMap.getInt( 8 );
+			int nCount = objMap.getInt( 12 );
+			if( nMagic != MAGIC || nVersion != VERSION || nCount < 0
+				|| lSize != HEADER_BYTES + 9L * nCount )
+			{
+				throw new IOException( objPath + " is not an opening book" );
+			}
+			objMap.position( HEADER_BYTES );
+			LongBuffer objKeys = objMap.slice().order( ByteOrder.LITTLE_ENDIAN ).asLongBuffer();
+			objMap.position( HEADER_BYTES + 8 * nCount );
+			ByteBuffer objScores = objMap.slice();
+			return( new OpeningBook( objKeys, objScores, nCount, nPlies ) );
+		}
+	}
+
+	// Get the number of plies the book was generated for.
+	public int GetPlies()
+	{
+		return( m_nPlies );
+	}
+
+	// Get the number of positions in the book.
+	public int GetCount()
+	{
+		return( m_nCount );
+	}
+
+	// Look up the score of a position with nPiece to move, or UNKNOWN if the
+	//   position is not in the book.
+	public int Probe( BitBoard pBoard, int nPiece )
+	{
+		long lKey = pBoard.GetCanonicalHash( nPiece );
+		int nLow = 0;
+		int nHigh = m_nCount - 1;
+		while( nLow <= nHigh )
+		{
+			int nMid = ( nLow + nHigh ) >>> 1;
+			long lMidKey = m_objKeys.get( nMid );
+			if( lMidKey < lKey )
+			{
+				nLow = nMid + 1;
+			}
+			else if( lMidKey > lKey )
+			{
+				nHigh = nMid - 1;
+			}
+			else
+			{
+				return( m_objScores.get( nMid ) );
+			}
+		}
+		return( UNKNOWN );
+	}
+
+	// Find the best move (column) for nPiece from the book: the move whose
+	//   position scores best for nPiece, the centre-most of equally good
+	//   moves. Returns -1 unless every move either ends the game or leads to
+	//   a position in the book.
+	public int GetMove( BitBoard pBoard, int nPiece )
+	{
+		int nBestMove = -1;
+		int nBestScore = Integer.MIN_VALUE;
+		for( int i=0; i<BitBoard.WIDTH; i++ )
+		{
+			int nCol = MiniMax.CENTRE_ORDER[i];
+			if( !pBoard.CanPlay( nCol ) )
+			{
+				continue;
+			}
+			int nScore = ScoreMove( pBoard, nPiece, nCol );
+			if( nScore == UNKNOWN )
+			{
+				return( -1 );
+			}
+			if( nScore > nBestScore )
+			{
+				nBestScore = nScore;
+				nBestMove = nCol;
+			}
+		}
+		return( nBestMove );
+	}
+
+	// Get the score for nPiece of playing a column, or UNKNOWN if the move
+	//   leads to a position that is not in the book.
+	public int ScoreMove( BitBoard pBoard, int nPiece, int nCol )
+	{
+		pBoard.MakeMove( nCol, nPiece );
+		int nScore;
+		if( pBoard.DidSideWin( nPiece ) )
+		{
+			nScore = ( BitBoard.WIDTH * BitBoard.HEIGHT + 2 - pBoard.m_nMoveCount ) / 2;
+		}
+		else if( pBoard.IsCatsGame() )
+		{
+			nScore = 0;
+		}
+		else
+		{
+			nScore = Probe( pBoard, nPiece ^ 1 );
+			nScore = ( nScore == UNKNOWN ) ? UNKNOWN : -nScore;
+		}
+		pBoard.UnmakeMove( nCol );
+		return( nScore );
+	}
+
+	// Write a book file from keys in ascending order and their scores.
+	static void Write( Path objPath, long[] lSortedKeys, byte[] nScores, int nPlies ) throws IOException
+	{
+		int nCount = lSortedKeys.length;
+		ByteBuffer objBuffer = ByteBuffer.allocate( HEADER_BYTES + 9 * nCount )
+			.order( ByteOrder.LITTLE_ENDIAN );
+		objBuffer.putInt( MAGIC ).putInt( VERSION ).putInt( nPlies ).putInt( nCount );
+		for( int i=0; i<nCount; i++ )
+		{
+			objBuffer.putLong( lSortedKeys[i] );
+		}
+		objBuffer.put( nScores );
+		objBuffer.flip();
+
+		try( FileChannel objChannel = FileChannel.open( objPath, StandardOpenOption.CREATE,
+			StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING ) )
+		{
+			while( objBuffer.hasRemaining() )
+			{
+				objChannel.write( objBuffer );
+			}
+		}
+	}
+
+	// Solve every position reachable in up to nPlies moves from a position
+	//   and write them to a book file. A position is only solved once,
+	//   however many move orders reach it, and only one of a position and
+	//   its mirror image.
+	public static void Generate( Path objPath, BitBoard brd, int nPiece, int nPlies ) throws IOException
+	{
+		Solver objSolver = new Solver();
+		HashMap<Long, Integer> objScores = new HashMap<Long, Integer>();
+		long lStart = System.nanoTime();
+		AddPositions( objSolver, objScores, brd, nPiece, nPlies );
+
+		long[] lKeys = new long[objScores.size()];
+		int nCount = 0;
+		for( Long lKey : objScores.keySet() )
+		{
+			lKeys[nCount++] = lKey;
+		}
+		Arrays.sort( lKeys );
+		byte[] nScores = new byte[nCount];
+		for( int i=0; i<nCount; i++ )
+		{
+			nScores[i] = (byte)(int)objScores.get( lKeys[i] );
+		}
+		Write( objPath, lKeys, nScores, brd.m_nMoveCount + nPlies );
+		System.out.println( nCount + " positions, " + objSolver.GetNodeCount() + " nodes, "
+			+ ( System.nanoTime() - lStart ) / 1000000 + " ms" );
+	}
+
+	// Solve a position and the positions below it, down to nPlies more moves.
+	static void AddPositions( Solver objSolver, HashMap<Long, Integer> objScores,
+		BitBoard brd, int nPiece, int nPlies )
+	{
+		long lKey = brd.GetCanonicalHash( nPiece );
+		if( objScores.containsKey( lKey ) )
+		{
+			return;
+		}
+		objScores.put( lKey, objSolver.Solve( brd, nPiece ) );
+		if( objScores.size() % 1000 == 0 )
+		{
+			System.out.println( objScores.size() + " positions solved" );
+		}
+		if( nPlies == 0 )
+		{
+			return;
+		}
+
+		for( int col=0; col<BitBoard.WIDTH; col++ )
+		{
+			if( !brd.CanPlay( col ) )
+			{
+				continue;
+			}
+			brd.MakeMove( col, nPiece );
+			// A game that is over has no position to look up.
+			if( !brd.DidSideWin( nPiece ) && !brd.IsCatsGame() )
+			{
+				AddPositions( objSolver, objScores, brd, nPiece ^ 1, nPlies - 1 );
+			}
+			brd.UnmakeMove( col );
+		}
+	}
+
+	public static void main( String[] args ) throws IOException
+	{
+		String strUsage = "Usage: OpeningBook <book file> <plies> [moves]";
+		if( args.length < 2 || !args[1].matches( "\\d+" ) )
+		{
+			System.out.println( strUsage );
+			return;
+		}
+		// Check the moves as Engine.Analyse() does: a bad one would make the
+		//   whole book for the wrong position.
+		BitBoard brd = new BitBoard();
+		int nPiece = Connect4.RED;
+		String strMoves = ( args.length > 2 ) ? args[2] : "";
+		for( int i=0; i<strMoves.length(); i++ )
+		{
+			int nCol = Character.digit( strMoves.charAt( i ), 10 ) - 1;
+			if( nCol < 0 || nCol >= BitBoard.WIDTH || !brd.CanPlay( nCol ) )
+			{
+				System.out.println( "illegal move " + ( i + 1 ) + " in \"" + strMoves + "\"" );
+				System.out.println( strUsage );
+				return;
+			}
+			brd.MakeMove( nCol, nPiece );
+			if( brd.DidSideWin( nPiece ) || brd.IsCatsGame() )
+			{
+				System.out.println( "the game is over after move " + ( i + 1 ) + " in \"" + strMoves + "\"" );
+				System.out.println( strUsage );
+				return;
+			}
+			nPiece ^= 1;
+		}
+		Generate( Paths.get( args[0] ), brd, nPiece, Integer.parseInt( args[1] ) );
+	}
+}
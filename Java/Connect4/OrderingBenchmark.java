@@ -0,0 +1,75 @@
+/**
+  * OrderingBenchmark.java
+  * This program shows what move ordering does to the bitboard search of
+  * MiniMax. The benchmark positions of MiniMaxBenchmark are searched to a
+  * fixed depth with the moves searched left to right, and then ordered. For
+  * both, the nodes and cut-offs at each ply are added up over the positions,
+  * along with the share of cut-offs that came from the first move searched,
+  * and the effective branching factor of each position is reported.
+  * Usage: OrderingBenchmark [depth]
+  * Dependencies: MiniMax.java, MiniMaxBenchmark.java, Position.java
+  */
+
+package connect4;
+
+public class OrderingBenchmark
+{
+	public static void main( String[] args )
+	{
+		int nDepth = ( args.length > 0 ) ? Integer.parseInt( args[0] ) : 9;
+
+		long[][] lNodes = new long[2][MiniMax.MAX_PLY + 1];
+		long[][] lCutoffs = new long[2][MiniMax.MAX_PLY + 1];
+		long[][] lFirstMoveCutoffs = new long[2][MiniMax.MAX_PLY + 1];
+
+		System.out.println( "position\tnodes unordered\tnodes ordered\tEBF unordered\tEBF ordered" );
+		for( int i=0; i<MiniMaxBenchmark.POSITIONS.length; i++ )
+		{
+			String strMoves = MiniMaxBenchmark.POSITIONS[i];
+			int nPiece = strMoves.length() % 2 == 0 ? Connect4.RED : Connect4.YELLOW;
+			long[] lPositionNodes = new long[2];
+			double[] dBranching = new double[2];
+
+			for( int nMode=0; nMode<2; nMode++ )
+			{
+				MiniMax objMiniMax = new MiniMax();
+				objMiniMax.m_nMaxPly = nDepth;
+				objMiniMax.SetMoveOrdering( nMode == 1 );
+				objMiniMax.SetKeepTable( false );
+				objMiniMax.GetMove( new Position(), MiniMaxBenchmark.MakeBoardData( strMoves ), nPiece );
+
+				Add( lNodes[nMode], objMiniMax.GetNodesPerPly() );
+				Add( lCutoffs[nMode], objMiniMax.GetCutoffsPerPly() );
+				Add( lFirstMoveCutoffs[nMode], objMiniMax.GetFirstMoveCutoffsPerPly() );
+				lPositionNodes[nMode] = objMiniMax.GetNodeCount();
+				dBranching[nMode] = objMiniMax.GetEffectiveBranchingFactor();
+			}
+			System.out.println( "\"" + strMoves + "\"\t" + lPositionNodes[0] + "\t" + lPositionNodes[1]
+				+ "\t" + String.format( "%.2f", dBranching[0] ) + "\t" + String.format( "%.2f", dBranching[1] ) );
+		}
+
+		System.out.println();
+		System.out.println( "ply\tnodes unordered\tcut-offs\tfirst move\tnodes ordered\tcut-offs\tfirst move" );
+		for( int ply=0; ply<=nDepth && ply<=MiniMax.MAX_PLY; ply++ )
+		{
+			System.out.println( ply + "\t" + lNodes[0][ply] + "\t" + lCutoffs[0][ply]
+				+ "\t" + Percent( lFirstMoveCutoffs[0][ply], lCutoffs[0][ply] )
+				+ "\t" + lNodes[1][ply] + "\t" + lCutoffs[1][ply]
+				+ "\t" + Percent( lFirstMoveCutoffs[1][ply], lCutoffs[1][ply] ) );
+		}
+	}
+
+	// Add one array of counters to another.
+	static void Add( long[] lTotal, long[] lCounts )
+	{
+		for( int i=0; i<lTotal.length; i++ )
+		{
+			lTotal[i] += lCounts[i];
+		}
+	}
+
+	static String Percent( long lPart, long lWhole )
+	{
+		return( lWhole == 0 ? "-" : String.format( "%.1f%%", 100.0 * lPart / lWhole ) );
+	}
+}
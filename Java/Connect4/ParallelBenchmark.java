@@ -0,0 +1,58 @@
+/**
+  * ParallelBenchmark.java
+  * This program measures how the Lazy SMP search of MiniMax scales with the
+  * number of threads. The benchmark positions of MiniMaxBenchmark are each
+  * searched to a fixed depth with 1, 2, ... up to N threads, and the time to
+  * finish the whole set is reported with the speedup over one thread.
+  * Usage: ParallelBenchmark [max threads] [depth]
+  * Dependencies: MiniMax.java, MiniMaxBenchmark.java, Position.java
+  */
+
+package connect4;
+
+public class ParallelBenchmark
+{
+	public static void main( String[] args )
+	{
+		int nMaxThreads = ( args.length > 0 ) ? Integer.parseInt( args[0] )
+			: Runtime.getRuntime().availableProcessors();
+		int nDepth = ( args.length > 1 ) ? Integer.parseInt( args[1] ) : 12;
+
+		// Warm up once on all threads.
+		RunSet( nMaxThreads, nDepth );
+
+		System.out.println( "threads\tms\tspeedup\tnodes/s" );
+		long lBaseNanos = 0;
+		for( int nThreads=1; nThreads<=nMaxThreads; nThreads++ )
+		{
+			long[] lResult = RunSet( nThreads, nDepth );
+			if( nThreads == 1 )
+			{
+				lBaseNanos = lResult[0];
+			}
+			System.out.println( nThreads + "\t" + ( lResult[0] / 1000000 ) + "\t"
+				+ String.format( "%.2f", (double)lBaseNanos / lResult[0] ) + "\t"
+				+ MiniMaxBenchmark.NodesPerSecond( lResult[1], lResult[0] ) );
+		}
+	}
+
+	// Search every benchmark position to the depth with a number of threads.
+	//   Returns the elapsed nanoseconds and the nodes searched on all threads.
+	static long[] RunSet( int nThreads, int nDepth )
+	{
+		MiniMax objMiniMax = new MiniMax();
+		objMiniMax.m_nMaxPly = nDepth;
+		objMiniMax.SetThreads( nThreads );
+		objMiniMax.SetKeepTable( false );
+		long lNodes = 0;
+		long lStart = System.nanoTime();
+		for( int i=0; i<MiniMaxBenchmark.POSITIONS.length; i++ )
+		{
+			String strMoves = MiniMaxBenchmark.POSITIONS[i];
+			int nPiece = strMoves.length() % 2 == 0 ? Connect4.RED : Connect4.YELLOW;
+			objMiniMax.GetMove( new Position(), MiniMaxBenchmark.MakeBoardData( strMoves ), nPiece );
+			lNodes += objMiniMax.GetNodeCount();
+		}
+		return( new long[] { System.nanoTime() - lStart, lNodes } );
+	}
+}
@@ -0,0 +1,322 @@
+/**
+  * SearchStats.java
+  * This class collects statistics of the MiniMax searches in a program, to
+  * watch and tune the engine while it runs: the nodes searched, the hit rate
+  * of the transposition table, the cut-offs and how many of them the first
+  * move caused, the time per move and per iteration of iterative deepening,
+  * and the last principal variation.
+  * <p>
+  * The search itself only counts in fields of its own MiniMax, which it
+  * already keeps. When a search finishes, it adds them to the Counters of
+  * its thread, which only that thread writes, so counting takes no locks or
+  * atomic operations. Reading a statistic adds up the Counters of all
+  * threads, and may miss what a thread added a moment ago.
+  * <p>
+  * The statistics are published as the JMX MBean "connect4:type=SearchStats"
+  * (see SearchStatsMXBean). Each search and each iteration is also a JFR
+  * event (connect4.Search and connect4.Iteration), which costs nothing
+  * unless a flight recording is running.
+  * Dependencies: MiniMax.java, SearchStatsMXBean.java
+  */
+
+package connect4;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.management.ObjectName;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+public class SearchStats implements SearchStatsMXBean
+{
+	// The JFR event of a search for a move.
+	@Name( "connect4.Search" )
+	@Label( "Search" )
+	@Category( "Connect4" )
+	static class SearchEvent extends Event
+	{
+		@Label( "Pieces" )
+		int pieces;
+		@Label( "Move" )
+		int move;
+		@Label( "Score" )
+		int score;
+		@Label( "Depth" )
+		int depth;
+		@Label( "Nodes" )
+		long nodes;
+		@Label( "Table Probes" )
+		long tableProbes;
+		@Label( "Table Hits" )
+		long tableHits;
+		@Label( "Principal Variation" )
+		String pv;
+	}
+
+	// The JFR event of an iteration of iterative deepening.
+	@Name( "connect4.Iteration" )
+	@Label( "Iteration" )
+	@Category( "Connect4" )
+	static class IterationEvent extends Event
+	{
+		@Label( "Depth" )
+		int depth;
+		@Label( "Nodes" )
+		long nodes;
+		@Label( "Score" )
+		int score;
+		@Label( "Completed" )
+		boolean completed;
+	}
+
+	// The counts of one thread.
+	static class Counters
+	{
+		long m_lSearches;
+		long m_lSearchNanos;
+		long m_lNodes;
+		long m_lTableProbes;
+		long m_lTableHits;
+		long m_lCutoffs;
+		long m_lFirstMoveCutoffs;
+		// Completed iterations, and their time, by depth.
+		long[] m_lIterations = new long[MiniMax.MAX_PLY + 1];
+		long[] m_lIterationNanos = new long[MiniMax.MAX_PLY + 1];
+
+		// Add the counts of the last search of a MiniMax.
+		void Add( MiniMax objSearch )
+		{
+			m_lNodes += objSearch.m_lNodes;
+			m_lTableProbes += objSearch.m_lTableProbes;
+			m_lTableHits += objSearch.m_lTableHits;
+			for( int ply=0; ply<=MiniMax.MAX_PLY; ply++ )
+			{
+				m_lCutoffs += objSearch.m_lCutoffsPerPly[ply];
+				m_lFirstMoveCutoffs += objSearch.m_lFirstMoveCutoffsPerPly[ply];
+			}
+		}
+
+		double NodesPerSecond()
+		{
+			return( m_lSearchNanos == 0 ? 0 : m_lNodes / ( m_lSearchNanos / 1e9 ) );
+		}
+
+		// Add the counts of other counters, or subtract them.
+		void Add( Counters objOther, int nSign )
+		{
+			m_lSearches += nSign * objOther.m_lSearches;
+			m_lSearchNanos += nSign * objOther.m_lSearchNanos;
+			m_lNodes += nSign * objOther.m_lNodes;
+			m_lTableProbes += nSign * objOther.m_lTableProbes;
+			m_lTableHits += nSign * objOther.m_lTableHits;
+			m_lCutoffs += nSign * objOther.m_lCutoffs;
+			m_lFirstMoveCutoffs += nSign * objOther.m_lFirstMoveCutoffs;
+			for( int ply=0; ply<=MiniMax.MAX_PLY; ply++ )
+			{
+				m_lIterations[ply] += nSign * objOther.m_lIterations[ply];
+				m_lIterationNanos[ply] += nSign * objOther.m_lIterationNanos[ply];
+			}
+		}
+	}
+
+	// The statistics of the program, registered with JMX on first use.
+	static SearchStats m_objStats;
+	// Whether Warm() has run.
+	static boolean m_bWarm;
+
+	// The counters of every thread that has searched.
+	CopyOnWriteArrayList<Counters> m_objCounters = new CopyOnWriteArrayList<Counters>();
+	ThreadLocal<Counters> m_objLocal = ThreadLocal.withInitial( () -> {
+		Counters objCounters = new Counters();
+		m_objCounters.add( objCounters );
+		return( objCounters );
+	});
+	// The totals at the last reset(), subtracted from the totals read.
+	Counters m_objBaseline = new Counters();
+	// The last move found.
+	volatile String m_strLastPV = "";
+	volatile int m_nLastDepth;
+	volatile int m_nLastScore;
+
+	// Get the statistics of the program.
+	public static synchronized SearchStats Get()
+	{
+		if( m_objStats == null )
+		{
+			m_objStats = new SearchStats();
+			try
+			{
+				ManagementFactory.getPlatformMBeanServer().registerMBean( m_objStats,
+					new ObjectName( "connect4:type=SearchStats" ) );
+			}
+			catch( Exception e )
+			{
+				e.printStackTrace();
+			}
+		}
+		return( m_objStats );
+	}
+
+	// Register the statistics with JMX and load the JFR event classes, once
+	//   per program. Left to the first search, they took hundreds of
+	//   milliseconds out of its time budget, so a search calls this before
+	//   it takes its deadline.
+	static synchronized void Warm()
+	{
+		if( m_bWarm )
+		{
+			return;
+		}
+		m_bWarm = true;
+		Get();
+		SearchEvent objSearch = new SearchEvent();
+		objSearch.begin();
+		objSearch.end();
+		objSearch.shouldCommit();
+		IterationEvent objIteration = new IterationEvent();
+		objIteration.begin();
+		objIteration.end();
+		objIteration.shouldCommit();
+	}
+
+	// Get the counters of the current thread.
+	Counters Local()
+	{
+		return( m_objLocal.get() );
+	}
+
+	// Record the move found by a search.
+	void SetLastSearch( int[] nPV, int nDepth, int nScore )
+	{
+		m_strLastPV = FormatPV( nPV );
+		m_nLastDepth = nDepth;
+		m_nLastScore = nScore;
+	}
+
+	// A principal variation as columns 1-7.
+	static String FormatPV( int[] nPV )
+	{
+		StringBuilder objText = new StringBuilder();
+		for( int i=0; i<nPV.length; i++ )
+		{
+			objText.append( nPV[i] + 1 );
+		}
+		return( objText.toString() );
+	}
+
+	// Add up the counters of all threads since the last reset().
+	synchronized Counters Total()
+	{
+		Counters objTotal = new Counters();
+		for( Counters objCounters : m_objCounters )
+		{
+			objTotal.Add( objCounters, 1 );
+		}
+		objTotal.Add( m_objBaseline, -1 );
+		return( objTotal );
+	}
+
+	static double Ratio( long lPart, long lWhole )
+	{
+		return( lWhole == 0 ? 0 : (double)lPart / lWhole );
+	}
+
+	@Override
+	public long getSearches()
+	{
+		return( Total().m_lSearches );
+	}
+
+	@Override
+	public long getNodes()
+	{
+		return( Total().m_lNodes );
+	}
+
+	@Override
+	public double getNodesPerSecond()
+	{
+		return( Total().NodesPerSecond() );
+	}
+
+	@Override
+	public double getAverageSearchMillis()
+	{
+		Counters objTotal = Total();
+		return( Ratio( objTotal.m_lSearchNanos, objTotal.m_lSearches ) / 1000000 );
+	}
+
+	@Override
+	public double getTableHitRate()
+	{
+		Counters objTotal = Total();
+		return( Ratio( objTotal.m_lTableHits, objTotal.m_lTableProbes ) );
+	}
+
+	@Override
+	public long getCutoffs()
+	{
+		return( Total().m_lCutoffs );
+	}
+
+	@Override
+	public double getFirstMoveCutoffRate()
+	{
+		Counters objTotal = Total();
+		return( Ratio( objTotal.m_lFirstMoveCutoffs, objTotal.m_lCutoffs ) );
+	}
+
+	@Override
+	public double[] getAverageIterationMillis()
+	{
+		Counters objTotal = Total();
+		double[] dMillis = new double[MiniMax.MAX_PLY + 1];
+		for( int ply=0; ply<=MiniMax.MAX_PLY; ply++ )
+		{
+			dMillis[ply] = Ratio( objTotal.m_lIterationNanos[ply], objTotal.m_lIterations[ply] ) / 1000000;
+		}
+		return( dMillis );
+	}
+
+	@Override
+	public String getLastPrincipalVariation()
+	{
+		return( m_strLastPV );
+	}
+
+	@Override
+	public int getLastDepth()
+	{
+		return( m_nLastDepth );
+	}
+
+	@Override
+	public int getLastScore()
+	{
+		return( m_nLastScore );
+	}
+
+	@Override
+	public synchronized void reset()
+	{
+		Counters objBaseline = new Counters();
+		for( Counters objCounters : m_objCounters )
+		{
+			objBaseline.Add( objCounters, 1 );
+		}
+		m_objBaseline = objBaseline;
+	}
+
+	// A one-line summary of the statistics.
+	@Override
+	public String toString()
+	{
+		Counters objTotal = Total();
+		return( objTotal.m_lSearches + " searches, " + objTotal.m_lNodes + " nodes, "
+			+ String.format( "%.0f", objTotal.NodesPerSecond() ) + " nodes/s, "
+			+ String.format( "%.1f", 100 * Ratio( objTotal.m_lTableHits, objTotal.m_lTableProbes ) ) + "% table hits, "
+			+ String.format( "%.1f", 100 * Ratio( objTotal.m_lFirstMoveCutoffs, objTotal.m_lCutoffs ) ) + "% first-move cut-offs" );
+	}
+}
@@ -0,0 +1,49 @@
+/**
+  * SearchStatsMXBean.java
+  * The management interface of SearchStats, for JMX clients such as
+  * jconsole. The statistics cover every search since the program started,
+  * or since reset(). (The methods are named as JMX requires attributes to
+  * be, getName().)
+  * Dependencies: None
+  */
+
+package connect4;
+
+public interface SearchStatsMXBean
+{
+	// The number of moves searched for.
+	long getSearches();
+
+	// The number of nodes searched, on all threads.
+	long getNodes();
+
+	// Nodes per second of search time.
+	double getNodesPerSecond();
+
+	// The average time to find a move, in milliseconds.
+	double getAverageSearchMillis();
+
+	// The share of transposition table probes that found the position.
+	double getTableHitRate();
+
+	// The number of alpha-beta cut-offs.
+	long getCutoffs();
+
+	// The share of cut-offs caused by the first move searched.
+	double getFirstMoveCutoffRate();
+
+	// The average time of an iterative deepening iteration, in
+	//   milliseconds, indexed by its depth.
+	double[] getAverageIterationMillis();
+
+	// The principal variation (columns 1-7), depth and score of the last
+	//   move found.
+	String getLastPrincipalVariation();
+
+	int getLastDepth();
+
+	int getLastScore();
+
+	// Start counting again from zero.
+	void reset();
+}
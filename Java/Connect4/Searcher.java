@@ -0,0 +1,35 @@
+/**
+  * Searcher.java
+  * The interface of the engines that find the computer's move: MiniMax,
+  * the alpha-beta search, and MCTS, the Monte Carlo tree search. Anything
+  * that only needs a move for a position can take either.
+  * Dependencies: Position.java, Geometry.java
+  */
+
+package connect4;
+
+public interface Searcher
+{
+	// Find the move for nPiece in a position of the board (rows x columns of
+	//   the geometry, as Board.GetBoardData() returns it), and set its row
+	//   and column in pos.
+	void GetMove( Position pos, int[][] BoardData, int nPiece );
+
+	// Get the amount of work the last GetMove() did, on all threads: nodes
+	//   searched by MiniMax, playouts by MCTS.
+	long GetNodeCount();
+
+	// Search on a board of a geometry.
+	void SetGeometry( Geometry objGeometry );
+
+	// Search for up to lMillis per move, or 0 for the searcher's own limit.
+	void SetTimeBudget( long lMillis );
+
+	// Search with a number of threads.
+	void SetThreads( int nThreads );
+
+	// Start a new game: forget the tables, trees and lines kept from the
+	//   positions searched before, so that the next search depends only on
+	//   its own position.
+	void NewGame();
+}
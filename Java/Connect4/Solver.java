@@ -0,0 +1,356 @@
+/**
+  * Solver.java
+  * This class solves a position exactly: with perfect play from both sides,
+  * which side wins, and how soon. Unlike MiniMax it does not score positions
+  * by a heuristic, it searches every line to the end of the game, and relies
+  * on pruning to make that feasible.
+  * <p>
+  * The score of a position is from the point of view of the side to move:
+  * 0 for a draw, a positive score if the side to move wins and a negative
+  * score if it loses. The sooner the win, the larger the score: a win on
+  * move m (counting from 1 for the first move of the game) scores
+  * (44 - m) / 2, the number of the winner's pieces that were still unplayed
+  * when it won, plus one.
+  * <p>
+  * The search is a negamax alpha-beta search on the BitBoard, with these
+  * refinements:
+  *   - a move is never searched if it lets the opponent win at once, and a
+  *     position in which the side to move has to give up a win is lost;
+  *   - moves are searched in order of the number of threats (squares that
+  *     would complete four) they create, centre columns first on ties;
+  *   - bounds are cached in a TranspositionTable, never cleared between
+  *     positions since a bound holds whatever position it was reached from;
+  *   - Solve() does not search with the full window but narrows down the
+  *     score with null-window searches, which cut off much more.
+  * Dependencies: BitBoard.java, TranspositionTable.java, Connect4.java
+  */
+
+package connect4;
+
+public class Solver
+{
+	static final int WIDTH = BitBoard.WIDTH;
+	static final int HEIGHT = BitBoard.HEIGHT;
+	static final int H1 = BitBoard.H1;
+	static final int SQUARES = WIDTH * HEIGHT;
+
+	// The bottom square of every column, and every playable square.
+	static final long BOTTOM_MASK;
+	static final long BOARD_MASK;
+
+	static
+	{
+		long lBottom = 0;
+		for( int col=0; col<WIDTH; col++ )
+		{
+			lBottom |= 1L << ( col * H1 );
+		}
+		BOTTOM_MASK = lBottom;
+		BOARD_MASK = lBottom * ( ( 1L << HEIGHT ) - 1 );
+	}
+
+	// The transposition table, shared by all positions solved.
+	TranspositionTable m_objTT;
+	// The number of nodes searched since the solver was created.
+	long m_lNodes;
+	// The moves and their ordering scores at each ply, preallocated.
+	long[][] m_lMoveBuffers = new long[SQUARES + 1][WIDTH];
+	int[][] m_nMoveScores = new int[SQUARES + 1][WIDTH];
+
+	// Create a solver with a transposition table of 2^nTableBits entries.
+	public Solver( int nTableBits )
+	{
+		m_objTT = new TranspositionTable( nTableBits );
+	}
+
+	// The constructor with a 2^22 entry (64 MB) transposition table.
+	public Solver()
+	{
+		this( 22 );
+	}
+
+	// Get the number of nodes searched since the solver was created.
+	public long GetNodeCount()
+	{
+		return( m_lNodes );
+	}
+
+	// Forget the bounds cached by earlier searches.
+	public void Reset()
+	{
+		m_objTT.Clear();
+		m_lNodes = 0;
+	}
+
+	// Solve a position with nPiece to move. Returns the exact score, or with
+	//   bWeak only its sign (1, 0 or -1), which is much faster to find. The
+	//   side that just moved must not have won already.
+	public int Solve( BitBoard pBoard, int nPiece, boolean bWeak )
+	{
+		if( CanWinNext( pBoard, nPiece ) )
+		{
+			return( bWeak ? 1 : ( SQUARES + 1 - pBoard.m_nMoveCount ) / 2 );
+		}
+
+		int nMin = -( SQUARES - pBoard.m_nMoveCount ) / 2;
+		int nMax = ( SQUARES + 1 - pBoard.m_nMoveCount ) / 2;
+		if( bWeak )
+		{
+			nMin = -1;
+			nMax = 1;
+		}
+
+		// Narrow [nMin, nMax] down to the score with null-window searches,
+		//   each of which tells whether the score is above a value. The
+		//   first values tried are near 0, where searches are cheaper.
+		while( nMin < nMax )
+		{
+			int nMed = nMin + ( nMax - nMin ) / 2;
+			if( nMed <= 0 && nMin / 2 < nMed )
+			{
+				nMed = nMin / 2;
+			}
+			else if( nMed >= 0 && nMax / 2 > nMed )
+			{
+				nMed = nMax / 2;
+			}
+			int nResult = Negamax( pBoard, nPiece, nMed, nMed + 1 );
+			if( nResult <= nMed )
+			{
+				nMax = nResult;
+			}
+			else
+			{
+				nMin = nResult;
+			}
+		}
+		// A weak search can return a bound beyond 1 or -1.
+		return( bWeak ? Integer.signum( nMin ) : nMin );
+	}
+
+	// Solve a position exactly. See Solve( pBoard, nPiece, bWeak ).
+	public int Solve( BitBoard pBoard, int nPiece )
+	{
+		return( Solve( pBoard, nPiece, false ) );
+	}
+
+	// Find the best move (column) for nPiece: the move whose position scores
+	//   best for nPiece, the centre-most of equally good moves. Returns -1 if
+	//   there is no legal move.
+	public int GetBestMove( BitBoard pBoard, int nPiece )
+	{
+		int nBestMove = -1;
+		int nBestScore = Integer.MIN_VALUE;
+		for( int i=0; i<WIDTH; i++ )
+		{
+			int nCol = MiniMax.CENTRE_ORDER[i];
+			if( !pBoard.CanPlay( nCol ) )
+			{
+				continue;
+			}
+			int nScore = ScoreMove( pBoard, nPiece, nCol );
+			if( nScore > nBestScore )
+			{
+				nBestScore = nScore;
+				nBestMove = nCol;
+			}
+		}
+		return( nBestMove );
+	}
+
+	// Get the exact score for nPiece of playing a column.
+	public int ScoreMove( BitBoard pBoard, int nPiece, int nCol )
+	{
+		pBoard.MakeMove( nCol, nPiece );
+		int nScore;
+		if( pBoard.DidSideWin( nPiece ) )
+		{
+			nScore = ( SQUARES + 2 - pBoard.m_nMoveCount ) / 2;
+		}
+		else if( pBoard.IsCatsGame() )
+		{
+			nScore = 0;
+		}
+		else
+		{
+			nScore = -Solve( pBoard, nPiece ^ 1 );
+		}
+		pBoard.UnmakeMove( nCol );
+		return( nScore );
+	}
+
+	// The negamax search. Returns the score if it lies within (nAlpha, nBeta),
+	//   an upper bound on it if it is at most nAlpha, and a lower bound on it
+	//   if it is at least nBeta. The side to move must not be able to win
+	//   with its next move.
+	int Negamax( BitBoard pBoard, int nPiece, int nAlpha, int nBeta )
+	{
+		m_lNodes++;
+		int nMoveCount = pBoard.m_nMoveCount;
+		long lNext = PossibleNonLosingMoves( pBoard, nPiece );
+		// Every move lets the opponent win.
+		if( lNext == 0 )
+		{
+			return( -( SQUARES - nMoveCount ) / 2 );
+		}
+		// Neither side can win with the last two pieces.
+		if( nMoveCount >= SQUARES - 2 )
+		{
+			return( 0 );
+		}
+
+		// The opponent cannot win with its next move, so the side to move
+		//   cannot lose sooner than that, and cannot win before its move
+		//   after next.
+		int nMin = -( SQUARES - 2 - nMoveCount ) / 2;
+		if( nAlpha < nMin )
+		{
+			nAlpha = nMin;
+			if( nAlpha >= nBeta )
+			{
+				return( nAlpha );
+			}
+		}
+		int nMax = ( SQUARES - 1 - nMoveCount ) / 2;
+		if( nBeta > nMax )
+		{
+			nBeta = nMax;
+			if( nAlpha >= nBeta )
+			{
+				return( nBeta );
+			}
+		}
+
+		// Narrow the window with a cached bound. A position and its mirror
+		//   image have the same score, so they share an entry.
+		long lKey = pBoard.GetCanonicalHash( nPiece );
+		long lEntry = m_objTT.Probe( lKey );
+		if( lEntry != 0 )
+		{
+			int nScore = TranspositionTable.GetScore( lEntry );
+			if( TranspositionTable.GetBound( lEntry ) == TranspositionTable.UPPER_BOUND )
+			{
+				if( nBeta > nScore )
+				{
+					nBeta = nScore;
+					if( nAlpha >= nBeta )
+					{
+						return( nBeta );
+					}
+				}
+			}
+			else if( nAlpha < nScore )
+			{
+				nAlpha = nScore;
+				if( nAlpha >= nBeta )
+				{
+					return( nAlpha );
+				}
+			}
+		}
+
+		// Order the moves by the threats they make, centre first on ties.
+		long[] lMoves = m_lMoveBuffers[nMoveCount];
+		int[] nScores = m_nMoveScores[nMoveCount];
+		int nMoves = 0;
+		long lOwn = pBoard.m_lPieces[nPiece];
+		long lMask = lOwn | pBoard.m_lPieces[nPiece ^ 1];
+		for( int i=0; i<WIDTH; i++ )
+		{
+			long lMove = lNext & BitBoard.COLUMN_MASK[MiniMax.CENTRE_ORDER[i]];
+			if( lMove == 0 )
+			{
+				continue;
+			}
+			int nScore = Long.bitCount( WinningSquares( lOwn | lMove, lMask ) );
+			int j = nMoves++;
+			while( j > 0 && nScores[j - 1] < nScore )
+			{
+				lMoves[j] = lMoves[j - 1];
+				nScores[j] = nScores[j - 1];
+				j--;
+			}
+			lMoves[j] = lMove;
+			nScores[j] = nScore;
+		}
+
+		int nPlies = SQUARES - nMoveCount;
+		for( int i=0; i<nMoves; i++ )
+		{
+			int nCol = Long.numberOfTrailingZeros( lMoves[i] ) / H1;
+			pBoard.MakeMove( nCol, nPiece );
+			int nScore = -Negamax( pBoard, nPiece ^ 1, -nBeta, -nAlpha );
+			pBoard.UnmakeMove( nCol );
+
+			if( nScore >= nBeta )
+			{
+				m_objTT.Store( lKey, nScore, nPlies, TranspositionTable.LOWER_BOUND,
+					pBoard.IsMirrored() ? pBoard.Mirror( nCol ) : nCol );
+				return( nScore );
+			}
+			if( nScore > nAlpha )
+			{
+				nAlpha = nScore;
+			}
+		}
+		m_objTT.Store( lKey, nAlpha, nPlies, TranspositionTable.UPPER_BOUND, -1 );
+		return( nAlpha );
+	}
+
+	// See if nPiece can win with its next move.
+	static boolean CanWinNext( BitBoard pBoard, int nPiece )
+	{
+		long lMask = pBoard.m_lPieces[0] | pBoard.m_lPieces[1];
+		return( ( WinningSquares( pBoard.m_lPieces[nPiece], lMask ) & Possible( lMask ) ) != 0 );
+	}
+
+	// The squares a piece can be dropped on next.
+	static long Possible( long lMask )
+	{
+		return( ( lMask + BOTTOM_MASK ) & BOARD_MASK );
+	}
+
+	// The moves (as the bits of the squares played) of nPiece that do not
+	//   let the opponent win at once. The side to move must not be able to
+	//   win with its next move.
+	static long PossibleNonLosingMoves( BitBoard pBoard, int nPiece )
+	{
+		long lMask = pBoard.m_lPieces[0] | pBoard.m_lPieces[1];
+		long lPossible = Possible( lMask );
+		long lThreats = WinningSquares( pBoard.m_lPieces[nPiece ^ 1], lMask );
+		long lForced = lPossible & lThreats;
+		if( lForced != 0 )
+		{
+			// Two squares to block at once cannot both be blocked.
+			if( ( lForced & ( lForced - 1 ) ) != 0 )
+			{
+				return( 0 );
+			}
+			lPossible = lForced;
+		}
+		// Do not play beneath a square on which the opponent would win.
+		return( lPossible & ~( lThreats >>> 1 ) );
+	}
+
+	// The empty squares that would complete four in a row for the pieces
+	//   lOwn, where lMask holds the pieces of both sides.
+	static long WinningSquares( long lOwn, long lMask )
+	{
+		// Vertical: three in a row directly below.
+		long r = ( lOwn << 1 ) & ( lOwn << 2 ) & ( lOwn << 3 );
+
+		// The row and both diagonals: the square is next to three in a row,
+		//   or fills the gap in a line of four.
+		for( int d=1; d<BitBoard.DIRECTIONS.length; d++ )
+		{
+			int s = BitBoard.DIRECTIONS[d];
+			long p = ( lOwn << s ) & ( lOwn << ( 2 * s ) );
+			r |= p & ( lOwn << ( 3 * s ) );
+			r |= p & ( lOwn >>> s );
+			p = ( lOwn >>> s ) & ( lOwn >>> ( 2 * s ) );
+			r |= p & ( lOwn >>> ( 3 * s ) );
+			r |= p & ( lOwn << s );
+		}
+		return( r & ( BOARD_MASK ^ lMask ) );
+	}
+}
@@ -0,0 +1,337 @@
+/**
+  * Tournament.java
+  * This program plays two engines against each other, headless, to measure
+  * what a change to the search costs or gains in strength: it reports the
+  * result and Elo difference of engine A against engine B, the games per
+  * second, and each engine's average nodes and time per move.
+  * <p>
+  * Games are played in pairs from the same opening, each engine playing RED
+  * once, and the pairs are played in parallel. The openings are a few
+  * random moves, from a fixed seed, so that deterministic engines do not
+  * play the same game over and over. Every game starts with NewGame() (see
+  * Searcher), so no engine carries tables over from the games its thread
+  * played before: with fixed-depth MiniMax engines a run can be repeated
+  * exactly, whatever the number of jobs. Timed searches and MCTS, which
+  * seeds its random numbers from the clock, vary from run to run.
+  * Usage: Tournament [options]
+  *   -a spec      engine A (default minimax)
+  *   -b spec      engine B (default minimax)
+  *   -games n     play n games, rounded up to pairs (default 1000)
+  *   -jobs n      play n games at once (default: one per processor)
+  *   -opening n   start each pair from n random moves (default 2)
+  *   -seed n      seed the openings (default 1)
+  *   -geometry g  play on a board of rows x columns [x k] (default 6x7)
+  * An engine is a searcher and its settings, separated by commas:
+  *   minimax[,depth=n][,time=ms][,threads=n][,ordering=off][,board=array]
+  *   mcts[,playouts=n][,time=ms][,threads=n][,c=exploration]
+  * e.g. -a minimax,depth=8 -b minimax,time=20 or -a mcts,playouts=20000.
+  * MiniMax searches 7 plies unless given a depth or time.
+  * Dependencies: Searcher.java, MiniMax.java, MCTS.java, BitBoard.java,
+  *   Geometry.java, Position.java, Connect4.java
+  */
+
+package connect4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class Tournament
+{
+	// The results of a pair of games, from engine A's side.
+	static class Result
+	{
+		int m_nWins;
+		int m_nDraws;
+		int m_nLosses;
+		// The nodes searched, moves made and nanoseconds taken by each
+		//   engine (A, then B).
+		long[] m_lNodes = new long[2];
+		long[] m_lMoves = new long[2];
+		long[] m_lNanos = new long[2];
+
+		void Add( Result objOther )
+		{
+			m_nWins += objOther.m_nWins;
+			m_nDraws += objOther.m_nDraws;
+			m_nLosses += objOther.m_nLosses;
+			for( int i=0; i<2; i++ )
+			{
+				m_lNodes[i] += objOther.m_lNodes[i];
+				m_lMoves[i] += objOther.m_lMoves[i];
+				m_lNanos[i] += objOther.m_lNanos[i];
+			}
+		}
+	}
+
+	// Create the searcher an engine spec describes (see the usage above).
+	static Searcher MakeSearcher( String strSpec, Geometry objGeometry )
+	{
+		String[] strParts = strSpec.split( "," );
+		Searcher objSearcher;
+		if( strParts[0].equals( "minimax" ) )
+		{
+			objSearcher = new MiniMax();
+		}
+		else if( strParts[0].equals( "mcts" ) )
+		{
+			objSearcher = new MCTS();
+		}
+		else
+		{
+			throw new IllegalArgumentException( "unknown engine \"" + strParts[0] + "\"" );
+		}
+		objSearcher.SetGeometry( objGeometry );
+
+		for( int i=1; i<strParts.length; i++ )
+		{
+			int nEquals = strParts[i].indexOf( '=' );
+			String strKey = ( nEquals < 0 ) ? strParts[i] : strParts[i].substring( 0, nEquals );
+			String strValue = ( nEquals < 0 ) ? "" : strParts[i].substring( nEquals + 1 );
+			MiniMax objMiniMax = ( objSearcher instanceof MiniMax ) ? (MiniMax)objSearcher : null;
+			MCTS objMCTS = ( objSearcher instanceof MCTS ) ? (MCTS)objSearcher : null;
+			if( strKey.equals( "time" ) )
+			{
+				objSearcher.SetTimeBudget( Long.parseLong( strValue ) );
+			}
+			else if( strKey.equals( "threads" ) )
+			{
+				objSearcher.SetThreads( Integer.parseInt( strValue ) );
+			}
+			else if( strKey.equals( "depth" ) && objMiniMax != null )
+			{
+				objMiniMax.m_nMaxPly = Integer.parseInt( strValue );
+			}
+			else if( strKey.equals( "ordering" ) && objMiniMax != null )
+			{
+				objMiniMax.SetMoveOrdering( !strValue.equals( "off" ) );
+			}
+			else if( strKey.equals( "board" ) && objMiniMax != null )
+			{
+				objMiniMax.SetUseBitBoard( !strValue.equals( "array" ) );
+			}
+			else if( strKey.equals( "playouts" ) && objMCTS != null )
+			{
+				objMCTS.SetPlayouts( Long.parseLong( strValue ) );
+			}
+			else if( strKey.equals( "c" ) && objMCTS != null )
+			{
+				objMCTS.SetExploration( Double.parseDouble( strValue ) );
+			}
+			else
+			{
+				throw new IllegalArgumentException( "unknown setting \"" + strParts[i] + "\" for " + strParts[0] );
+			}
+		}
+		return( objSearcher );
+	}
+
+	// Play a random opening of nPlies moves, none of which ends the game.
+	static BitBoard MakeOpening( Geometry objGeometry, Random objRandom, int nPlies )
+	{
+		BitBoard brd = new BitBoard( objGeometry );
+		int nPiece = Connect4.RED;
+		for( int i=0; i<nPlies && i<objGeometry.m_nSquares-1; i++ )
+		{
+			int col;
+			do
+			{
+				col = objRandom.nextInt( objGeometry.m_nCols );
+			}
+			while( !brd.CanPlay( col ) );
+			brd.MakeMove( col, nPiece );
+			if( brd.DidSideWin( nPiece ) )
+			{
+				brd.UnmakeMove( col );
+				i--;
+				continue;
+			}
+			nPiece ^= 1;
+		}
+		return( brd );
+	}
+
+	// Play a game from an opening, with engines[0] playing RED. Returns the
+	//   winner, or Connect4.EMPTY for a draw, and adds each engine's nodes,
+	//   moves and time to objResult, whose engine A is engines[nA].
+	static int PlayGame( Searcher[] objEngines, int nA, BitBoard objOpening, Result objResult )
+	{
+		BitBoard brd = objOpening.Clone();
+		int nPiece = ( brd.m_nMoveCount % 2 == 0 ) ? Connect4.RED : Connect4.YELLOW;
+		objEngines[0].NewGame();
+		objEngines[1].NewGame();
+		Position pos = new Position();
+		while( !brd.IsCatsGame() )
+		{
+			Searcher objEngine = objEngines[nPiece];
+			long lStart = System.nanoTime();
+			objEngine.GetMove( pos, brd.GetBoardData(), nPiece );
+			int nSide = ( nPiece == nA ) ? 0 : 1;
+			objResult.m_lNanos[nSide] += System.nanoTime() - lStart;
+			objResult.m_lNodes[nSide] += objEngine.GetNodeCount();
+			objResult.m_lMoves[nSide]++;
+
+			if( pos.Col < 0 || pos.Col >= brd.m_objGeometry.m_nCols || !brd.CanPlay( pos.Col ) )
+			{
+				throw new IllegalStateException( "illegal move " + pos.Col + " by " + objEngine );
+			}
+			brd.MakeMove( pos.Col, nPiece );
+			if( brd.DidSideWin( nPiece ) )
+			{
+				return( nPiece );
+			}
+			nPiece ^= 1;
+		}
+		return( Connect4.EMPTY );
+	}
+
+	// Play a pair of games from an opening, engine A playing RED first.
+	static Result PlayPair( Searcher objA, Searcher objB, BitBoard objOpening )
+	{
+		Result objResult = new Result();
+		for( int nA=Connect4.RED; nA<=Connect4.YELLOW; nA++ )
+		{
+			Searcher[] objEngines = ( nA == Connect4.RED ) ? new Searcher[] { objA, objB }
+				: new Searcher[] { objB, objA };
+			int nWinner = PlayGame( objEngines, nA, objOpening, objResult );
+			if( nWinner == Connect4.EMPTY )
+			{
+				objResult.m_nDraws++;
+			}
+			else if( nWinner == nA )
+			{
+				objResult.m_nWins++;
+			}
+			else
+			{
+				objResult.m_nLosses++;
+			}
+		}
+		return( objResult );
+	}
+
+	// Get the Elo difference that an expected score (0 to 1) stands for.
+	static double Elo( double dScore )
+	{
+		return( -400 * Math.log10( 1 / dScore - 1 ) );
+	}
+
+	// Format an Elo difference, which is infinite for a score of 0 or 1.
+	static String FormatElo( double dElo )
+	{
+		return( Double.isInfinite( dElo ) ? ( dElo > 0 ? "+inf" : "-inf" )
+			: String.format( "%+.1f", dElo ) );
+	}
+
+	public static void main( String[] args ) throws Exception
+	{
+		String strA = "minimax";
+		String strB = "minimax";
+		int nGames = 1000;
+		int nJobs = Runtime.getRuntime().availableProcessors();
+		int nOpening = 2;
+		long lSeed = 1;
+		Geometry objGeometry = Geometry.STANDARD;
+		for( int i=0; i<args.length; i++ )
+		{
+			if( args[i].equals( "-a" ) && i + 1 < args.length )
+			{
+				strA = args[++i];
+			}
+			else if( args[i].equals( "-b" ) && i + 1 < args.length )
+			{
+				strB = args[++i];
+			}
+			else if( args[i].equals( "-games" ) && i + 1 < args.length )
+			{
+				nGames = Integer.parseInt( args[++i] );
+			}
+			else if( args[i].equals( "-jobs" ) && i + 1 < args.length )
+			{
+				nJobs = Integer.parseInt( args[++i] );
+			}
+			else if( args[i].equals( "-opening" ) && i + 1 < args.length )
+			{
+				nOpening = Integer.parseInt( args[++i] );
+			}
+			else if( args[i].equals( "-seed" ) && i + 1 < args.length )
+			{
+				lSeed = Long.parseLong( args[++i] );
+			}
+			else if( args[i].equals( "-geometry" ) && i + 1 < args.length )
+			{
+				objGeometry = Geometry.Parse( args[++i] );
+			}
+			else
+			{
+				System.out.println( "Usage: Tournament [-a spec] [-b spec] [-games n] [-jobs n] [-opening n] [-seed n] [-geometry g]" );
+				return;
+			}
+		}
+
+		// Check the specs before starting, then give each worker thread its
+		//   own pair of engines, which are not thread-safe.
+		MakeSearcher( strA, objGeometry );
+		MakeSearcher( strB, objGeometry );
+		final String strEngineA = strA;
+		final String strEngineB = strB;
+		final Geometry objEngineGeometry = objGeometry;
+		ThreadLocal<Searcher[]> objEngines = ThreadLocal.withInitial( () -> new Searcher[] {
+			MakeSearcher( strEngineA, objEngineGeometry ), MakeSearcher( strEngineB, objEngineGeometry ) } );
+
+		int nPairs = ( nGames + 1 ) / 2;
+		System.out.println( "# A: " + strA + "  B: " + strB + "  " + ( 2 * nPairs ) + " games on "
+			+ objGeometry + ", " + nOpening + "-ply openings" );
+		Result objTotal = new Result();
+		long lStart = System.nanoTime();
+		ExecutorService objPool = Executors.newFixedThreadPool( Math.max( nJobs, 1 ) );
+		try
+		{
+			List<Future<Result>> objResults = new ArrayList<Future<Result>>();
+			for( int i=0; i<nPairs; i++ )
+			{
+				// Each pair's opening depends only on the seed and the pair.
+				BitBoard objOpening = MakeOpening( objGeometry, new Random( lSeed * 1000003 + i ), nOpening );
+				objResults.add( objPool.submit( () -> {
+					Searcher[] objPair = objEngines.get();
+					return( PlayPair( objPair[0], objPair[1], objOpening ) );
+				}));
+			}
+			for( int i=0; i<objResults.size(); i++ )
+			{
+				objTotal.Add( objResults.get( i ).get() );
+			}
+		}
+		finally
+		{
+			objPool.shutdown();
+		}
+		double dSeconds = ( System.nanoTime() - lStart ) / 1e9;
+
+		// The score of A, and its 95% confidence interval from the spread of
+		//   the game results.
+		int n = objTotal.m_nWins + objTotal.m_nDraws + objTotal.m_nLosses;
+		double dScore = ( objTotal.m_nWins + 0.5 * objTotal.m_nDraws ) / n;
+		double dVariance = ( objTotal.m_nWins * ( 1 - dScore ) * ( 1 - dScore )
+			+ objTotal.m_nDraws * ( 0.5 - dScore ) * ( 0.5 - dScore )
+			+ objTotal.m_nLosses * dScore * dScore ) / n;
+		double dMargin = 1.96 * Math.sqrt( dVariance / n );
+
+		System.out.println( "A +" + objTotal.m_nWins + " =" + objTotal.m_nDraws + " -" + objTotal.m_nLosses
+			+ String.format( "  score %.1f%%", 100 * dScore ) );
+		System.out.println( "Elo A - B: " + FormatElo( Elo( dScore ) ) + " (95%: "
+			+ FormatElo( Elo( Math.max( dScore - dMargin, 0 ) ) ) + " to "
+			+ FormatElo( Elo( Math.min( dScore + dMargin, 1 ) ) ) + ")" );
+		System.out.println( String.format( "%.2f games/s, %.1f s", n / dSeconds, dSeconds ) );
+		String[] strNames = { "A", "B" };
+		for( int i=0; i<2; i++ )
+		{
+			long lMoves = Math.max( objTotal.m_lMoves[i], 1 );
+			System.out.println( strNames[i] + ": " + objTotal.m_lNodes[i] / lMoves + " nodes/move, "
+				+ String.format( "%.2f ms/move", objTotal.m_lNanos[i] / 1e6 / lMoves ) );
+		}
+	}
+}
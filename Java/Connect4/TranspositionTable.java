@@ -0,0 +1,126 @@
+/**
+  * TranspositionTable.java
+  * This class caches search results by position, so that a position reached
+  * again through a different move order (a transposition) is not searched
+  * twice. Positions are identified by their Zobrist key (see BitBoard).
+  * <p>
+  * The table is a fixed-size, open-addressed array of longs, two per entry:
+  * the full key, to detect collisions, and the packed data
+  *
+  *   bits  0-31  score
+  *   bits 32-39  depth (number of plies searched below the position)
+  *   bits 40-41  bound type (EXACT, LOWER_BOUND or UPPER_BOUND)
+  *   bits 42-45  best move (column + 1, or 0 for none)
+  *   bits 46-51  generation (see NewSearch())
+  *
+  * Each key maps to one slot, and a slot is only overwritten by a result that
+  * was searched at least as deep (depth-preferred replacement), or by any
+  * result once the slot's entry is from an earlier search. Entries of earlier
+  * searches still answer probes, so a table kept from move to move finds the
+  * positions searched for the last move, but does not fill up with them.
+  * <p>
+  * Several search threads can share one table without locks. The first long
+  * of an entry holds the key XORed with the data, so an entry that was torn by
+  * two threads writing it at once no longer matches its key and reads as a
+  * miss, instead of returning one position's data for another.
+  * Dependencies: None
+  */
+
+package connect4;
+
+import java.util.Arrays;
+
+public class TranspositionTable
+{
+	// Bound types. The score is exact, or the true score is at least (lower
+	//   bound) or at most (upper bound) the stored score.
+	static final int EXACT = 1;
+	static final int LOWER_BOUND = 2;
+	static final int UPPER_BOUND = 3;
+
+	// Two longs per entry: the key XOR the data, then the data.
+	long[] m_lTable;
+	// The number of entries less one, for masking the key into a slot.
+	int m_nMask;
+	// The generation stored with new entries, counting searches modulo 64.
+	int m_nGeneration;
+
+	// Create a table with 2^nSizeBits entries (16 bytes each).
+	public TranspositionTable( int nSizeBits )
+	{
+		m_lTable = new long[2 << nSizeBits];
+		m_nMask = ( 1 << nSizeBits ) - 1;
+	}
+
+	// Empty the table.
+	public void Clear()
+	{
+		Arrays.fill( m_lTable, 0 );
+	}
+
+	// Start a new search: the entries stored so far become replaceable by
+	//   any new result, however shallow.
+	public void NewSearch()
+	{
+		m_nGeneration = ( m_nGeneration + 1 ) & 0x3F;
+	}
+
+	// Look up a position. Returns the packed data, or 0 if the position is not
+	//   in the table (stored data always has a non-zero bound type).
+	public long Probe( long lKey )
+	{
+		int nSlot = ( (int)lKey & m_nMask ) * 2;
+		long lData = m_lTable[nSlot+1];
+		if( ( m_lTable[nSlot] ^ lData ) == lKey )
+		{
+			return( lData );
+		}
+		return( 0 );
+	}
+
+	// Store the result of searching a position, unless its slot holds a result
+	//   of this search that was searched deeper.
+	public void Store( long lKey, int nScore, int nDepth, int nBound, int nMove )
+	{
+		int nSlot = ( (int)lKey & m_nMask ) * 2;
+		long lData = m_lTable[nSlot+1];
+		if( lData != 0 && GetGeneration( lData ) == m_nGeneration && GetDepth( lData ) > nDepth )
+		{
+			return;
+		}
+		lData = ( nScore & 0xFFFFFFFFL )
+			| ( (long)nDepth << 32 )
+			| ( (long)nBound << 40 )
+			| ( (long)( nMove + 1 ) << 42 )
+			| ( (long)m_nGeneration << 46 );
+		m_lTable[nSlot] = lKey ^ lData;
+		m_lTable[nSlot+1] = lData;
+	}
+
+	// Methods to unpack the data returned by Probe().
+	static int GetScore( long lData )
+	{
+		return( (int)lData );
+	}
+
+	static int GetDepth( long lData )
+	{
+		return( (int)( lData >>> 32 ) & 0xFF );
+	}
+
+	static int GetBound( long lData )
+	{
+		return( (int)( lData >>> 40 ) & 0x3 );
+	}
+
+	// The best move (column), or -1 for none.
+	static int GetMove( long lData )
+	{
+		return( (int)( ( lData >>> 42 ) & 0xF ) - 1 );
+	}
+
+	static int GetGeneration( long lData )
+	{
+		return( (int)( lData >>> 46 ) & 0x3F );
+	}
+}
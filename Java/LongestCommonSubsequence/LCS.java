@@ -8,13 +8,28 @@
  * finding the longest subsequence common to all sequences in a set of two 
  * (or more) sequences. Dynamic Programming provides an efficient approach for 
  * computing the LCS.
+ *
+ * When only the length of the LCS is needed, as when scoring how similar two
+ * large documents are, lcsLength and lcsLengthBitParallel compute it in space
+ * linear in the length of the sequences. lcsHirschberg computes the LCS itself
+ * in linear space, on a fork/join pool. allLcs enumerates every distinct LCS,
+ * up to a limit.
+ *
+ * Every method compares sequences of symbol ids, ints, in its inner loop.
+ * The methods that take sequences of Strings intern them first with a
+ * SymbolTable; to compare many sequences, intern them all with one table
+ * and call the int[] methods. MyersDiff shares the same interning to diff
+ * mostly similar sequences without the table.
  */
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
  
 public class LCS
 {
-    static Node[][] memo;
-    static StringBuffer buffer;
-    static int bufferCount;
+    static int[][] memo;
 
     /**
      * lcs(first[], second[]): method that computes the longest subsequence common
@@ -23,124 +38,668 @@ public class LCS
      * @param second the second sequence of Strings for comparison
      */
     static void lcs(String[] first, String[] second)
+    {
+        // compare symbol ids rather than Strings
+        SymbolTable table = new SymbolTable();
+        int[] a = table.intern(first);
+        int[] b = table.intern(second);
+        memoize(a, b);
+
+        /* print results */
+        // print count
+        System.out.println("LCS:");
+        System.out.println("Count: " + memo[first.length][second.length]);
+        // backtrack through the memoization table to read out the LCS
+        System.out.println(String.join(" ", table.symbols(backtrack(a, b))));
+    }
+
+    /**
+     * memoize(first[], second[]): method that fills the memoization table used
+     * by lcs(first, second) and backtrack, interning the sequences first (see
+     * memoize(int[], int[])).
+     * @param first the first sequence of Strings for comparison
+     * @param second the second sequence of Strings for comparison
+     */
+    static void memoize(String[] first, String[] second)
+    {
+        SymbolTable table = new SymbolTable();
+        memoize(table.intern(first), table.intern(second));
+    }
+
+    /**
+     * memoize(first[], second[]): method that fills the memoization table used
+     * by lcs(first, second) and backtrack: memo[row][col] is the length of the
+     * LCS of the first row elements of first and the first col of second.
+     * @param first the first sequence of symbol ids for comparison
+     * @param second the second sequence of symbol ids for comparison
+     */
+    static void memoize(int[] first, int[] second)
     {
         /* initialize memoization table */
-        memo = new Node[first.length+1][second.length+1];
-        for(int row = 0; row <= first.length; row++)
-        {
-            for(int col = 0; col <= second.length; col++)
-            {
-                memo[row][col] = new Node();
-            }
-        }
+        memo = new int[first.length+1][second.length+1];
 
         /* compute the longest common subsequence */
         // the sequence elements are defined to start at 1,
         // so that is it known the LCS is empty when a subscript is zero.
         for(int row = 1; row <= first.length; row++)
         {
+            int[] above = memo[row-1];
+            int[] current = memo[row];
+            int symbol = first[row-1];
             for(int col = 1; col <= second.length; col++)
             {
                 // if the two current subsequences are not equal
                 // then retain the longer of the two sequences.
-                // NOTE: this implementation is greedy and does not account for
-                // both being the same length, but not identical.
-                if(!first[row-1].equals(second[col-1]))
+                if(symbol != second[col-1])
                 {
-                    if(memo[row][col-1].getValue() > memo[row-1][col].getValue())
-                    {
-                         memo[row][col].setValue( memo[row][col-1].getValue() );
-
-                    }
-                    else
-                    {
-                        memo[row][col].setValue( memo[row-1][col].getValue() );
-                    }
+                    current[col] = Math.max(current[col-1], above[col]);
                 }
                 // otherwise the next element is common to the subsequences,
-                // so extend the least common subsequence.
+                // so extend the longest common subsequence.
                 else
                 {
-                    memo[row][col].setValue( 1 + memo[row-1][col-1].getValue() );
-                    memo[row][col].setBridge( memo[row-1][col-1] );
-                    memo[row-1][col-1].setBridge( memo[row][col] );
+                    current[col] = 1 + above[col-1];
                 }
             }
         }
+    }
 
-        /* print results */
-        // print count
-        System.out.println("LCS:");
-        bufferCount = memo[first.length][second.length].getValue();
-        System.out.println("Count: " + bufferCount);
-        // backtrack through the memoization table to read out the LCS
-        buffer = new StringBuffer();
-        backtrack(first.length, second.length, bufferCount, first );
-        System.out.println(buffer.toString());
+    /**
+     * backtrack(first[], second[]): method that reads out a longest common
+     * subsequence from the memoization table filled by memoize(first, second)
+     * (see backtrack(int[], int[])).
+     * @param first the first sequence of Strings used to fill the table
+     * @param second the second sequence of Strings used to fill the table
+     * @return the longest common subsequence, in order
+     */
+    static String[] backtrack(String[] first, String[] second)
+    {
+        SymbolTable table = new SymbolTable();
+        return table.symbols(backtrack(table.intern(first), table.intern(second)));
     }
 
     /**
-     * backtrack(r, c, key, list[]): method that backtracks through the memoization
-     * table generated by method lcm(first, second) to read out the least common
-     * subsequence.
-     * @param r the number of rows in the memoization table
-     * @param c the number of columns in the memoization table
-     * @param key the length of the longest common subsequence
-     * @param list the first of the two sequences used to compute the lcs, used
-     * to print each symbol in the lcs as it is encountered.
+     * backtrack(first[], second[]): method that walks back through the
+     * memoization table filled by memoize(first, second) to read out a longest
+     * common subsequence. From the last cell it steps to the cell the cell's
+     * length came from, taking the element when the two sequences match, so
+     * it visits at most n+m cells. Of several LCSs of the same length it
+     * always reads out the same one.
+     * @param first the first sequence of symbol ids used to fill the table
+     * @param second the second sequence of symbol ids used to fill the table
+     * @return the longest common subsequence, in order
      */
-    private static void backtrack(int r, int c, int key, String[] list)
+    static int[] backtrack(int[] first, int[] second)
     {
-        if(bufferCount == 0 || r == 0 || c == 0 || key == 0)
+        int r = first.length;
+        int c = second.length;
+        int[] result = new int[memo[r][c]];
+        int index = result.length;
+        while(r > 0 && c > 0)
         {
-            return;
+            if(first[r-1] == second[c-1])
+            {
+                result[--index] = first[r-1];
+                r--;
+                c--;
+            }
+            // otherwise move toward the neighbour with the longer LCS,
+            // preferring the row above on ties.
+            else if(memo[r-1][c] >= memo[r][c-1])
+            {
+                r--;
+            }
+            else
+            {
+                c--;
+            }
         }
+        return result;
+    }
 
-        if(memo[r][c].getBridge() != null)
+    /**
+     * allLcs(first[], second[], limit, visitor): method that enumerates the
+     * distinct longest common subsequences of two sequences of Strings (see
+     * allLcs(int[], int[], int, Consumer)).
+     * @param first the first sequence of Strings for comparison
+     * @param second the second sequence of Strings for comparison
+     * @param limit the most subsequences to visit
+     * @param visitor the consumer of each subsequence, in order
+     * @return the number of subsequences visited
+     */
+    static int allLcs(String[] first, String[] second, int limit, Consumer<String[]> visitor)
+    {
+        SymbolTable table = new SymbolTable();
+        return allLcs(table.intern(first), table.intern(second), limit,
+            lcs -> visitor.accept(table.symbols(lcs)));
+    }
+
+    /**
+     * allLcs(first[], second[], limit, visitor): method that enumerates the
+     * distinct longest common subsequences of two sequences, of which there can
+     * be exponentially many, passing each to the visitor until limit of them
+     * have been visited.
+     *
+     * The subsequences are built from their last element back. In a cell
+     * whose LCS still needs k more elements, each symbol common to both
+     * sequences is tried as the element before them: at its last occurrence
+     * in each sequence before the cell, it can end an LCS of the cell only if
+     * the LCS before the two occurrences is k-1 long. Different symbols make
+     * different subsequences, so none is visited twice, and a symbol that is
+     * tried always leads to a complete LCS. The search keeps one cell and one
+     * symbol per element on an explicit stack, so besides the memoization
+     * table it needs memory only linear in the length of the sequences.
+     * @param first the first sequence of symbol ids for comparison
+     * @param second the second sequence of symbol ids for comparison
+     * @param limit the most subsequences to visit
+     * @param visitor the consumer of each subsequence, in order; the array is
+     * the visitor's to keep
+     * @return the number of subsequences visited
+     */
+    static int allLcs(int[] first, int[] second, int limit, Consumer<int[]> visitor)
+    {
+        memoize(first, second);
+        int length = memo[first.length][second.length];
+        if(limit <= 0)
         {
-            buffer.append(list[r-1]).append(" ");
-            --bufferCount;
-            backtrack(r-1, c-1, key-1, list);
+            return 0;
+        }
+        if(length == 0)
+        {
+            visitor.accept(new int[0]);
+            return 1;
         }
 
-        if(memo[r][c].getValue() == key)
+        // the symbols common to both sequences, and the positions of each in
+        // each sequence, in ascending order
+        int symbolCount = 0;
+        for(int symbol : first)
+        {
+            symbolCount = Math.max(symbolCount, symbol + 1);
+        }
+        int[] firstCounts = new int[symbolCount];
+        int[] secondCounts = new int[symbolCount];
+        for(int symbol : first)
         {
-            for(int i = 1; c-i > 0; i++)
+            firstCounts[symbol]++;
+        }
+        for(int symbol : second)
+        {
+            if(symbol < symbolCount)
             {
-                backtrack(r, c-i, key, list);
+                secondCounts[symbol]++;
             }
+        }
+        int common = 0;
+        for(int symbol = 0; symbol < symbolCount; symbol++)
+        {
+            if(firstCounts[symbol] > 0 && secondCounts[symbol] > 0)
+            {
+                common++;
+            }
+        }
+        int[] symbols = new int[common];
+        int[][] firstPositions = new int[symbolCount][];
+        int[][] secondPositions = new int[symbolCount][];
+        common = 0;
+        for(int symbol = 0; symbol < symbolCount; symbol++)
+        {
+            if(firstCounts[symbol] > 0 && secondCounts[symbol] > 0)
+            {
+                symbols[common++] = symbol;
+                firstPositions[symbol] = new int[firstCounts[symbol]];
+                secondPositions[symbol] = new int[secondCounts[symbol]];
+                firstCounts[symbol] = 0;
+                secondCounts[symbol] = 0;
+            }
+        }
+        for(int i = 0; i < first.length; i++)
+        {
+            int symbol = first[i];
+            if(firstPositions[symbol] != null)
+            {
+                firstPositions[symbol][firstCounts[symbol]++] = i;
+            }
+        }
+        for(int j = 0; j < second.length; j++)
+        {
+            int symbol = second[j];
+            if(symbol < symbolCount && secondPositions[symbol] != null)
+            {
+                secondPositions[symbol][secondCounts[symbol]++] = j;
+            }
+        }
 
-            backtrack(r-1, c, key, list);
+        // the stack: at depth d, d elements from the end have been chosen, the
+        // rest lie before cell (rows[d], cols[d]), and cursor[d] is the next
+        // symbol to try there
+        int[] rows = new int[length+1];
+        int[] cols = new int[length+1];
+        int[] cursor = new int[length+1];
+        int[] subsequence = new int[length];
+        rows[0] = first.length;
+        cols[0] = second.length;
+        int depth = 0;
+        int count = 0;
+        while(depth >= 0)
+        {
+            if(depth == length)
+            {
+                visitor.accept(subsequence.clone());
+                if(++count >= limit)
+                {
+                    break;
+                }
+                depth--;
+                continue;
+            }
+
+            boolean extended = false;
+            while(cursor[depth] < symbols.length)
+            {
+                int symbol = symbols[cursor[depth]++];
+                int r = lastBefore(firstPositions[symbol], rows[depth]);
+                int c = lastBefore(secondPositions[symbol], cols[depth]);
+                if(r >= 0 && c >= 0 && memo[r][c] == length - depth - 1)
+                {
+                    subsequence[length - depth - 1] = symbol;
+                    depth++;
+                    rows[depth] = r;
+                    cols[depth] = c;
+                    cursor[depth] = 0;
+                    extended = true;
+                    break;
+                }
+            }
+            if(!extended)
+            {
+                depth--;
+            }
         }
+        return count;
+    }
 
-        // otherwise the bounds of this partition (m[r][c] < key) are exceeded
-        return;
+    /**
+     * lastBefore(positions[], bound): method that finds the last of an
+     * ascending array of positions that comes before a bound.
+     * @param positions the positions, in ascending order
+     * @param bound the bound
+     * @return the last position less than bound, or -1 if there is none
+     */
+    private static int lastBefore(int[] positions, int bound)
+    {
+        int index = Arrays.binarySearch(positions, bound);
+        // not found: binarySearch returns -(insertion point) - 1
+        int before = (index >= 0) ? index - 1 : -index - 2;
+        return (before >= 0) ? positions[before] : -1;
     }
 
-    /* node structure used to track extensions of the least common subsequence */
-    private static class Node
+    /**
+     * lcsLength(first[], second[]): method that computes only the length of the
+     * longest subsequence common to two sequences of Strings (see
+     * lcsLength(int[], int[])).
+     * @param first the first sequence of Strings for comparison
+     * @param second the second sequence of Strings for comparison
+     * @return the length of the longest common subsequence
+     */
+    static int lcsLength(String[] first, String[] second)
     {
-        int value;
-        Node bridge;
+        SymbolTable table = new SymbolTable();
+        return lcsLength(table.intern(first), table.intern(second));
+    }
 
-        void setValue(int n)
+    /**
+     * lcsLength(first[], second[]): method that computes only the length of the
+     * longest subsequence common to two sequences. It fills the same table as
+     * lcs(first, second), but keeps just the previous and the current row, as
+     * two int arrays as long as the shorter sequence.
+     * @param first the first sequence of symbol ids for comparison
+     * @param second the second sequence of symbol ids for comparison
+     * @return the length of the longest common subsequence
+     */
+    static int lcsLength(int[] first, int[] second)
+    {
+        // the shorter sequence runs along the rows
+        if(second.length > first.length)
         {
-            value = n;
+            int[] swap = first;
+            first = second;
+            second = swap;
         }
 
-        int getValue()
+        int[] previous = new int[second.length+1];
+        int[] current = new int[second.length+1];
+        for(int row = 1; row <= first.length; row++)
         {
-            return value;
+            int symbol = first[row-1];
+            for(int col = 1; col <= second.length; col++)
+            {
+                if(symbol == second[col-1])
+                {
+                    current[col] = 1 + previous[col-1];
+                }
+                else
+                {
+                    current[col] = Math.max(current[col-1], previous[col]);
+                }
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
         }
+        return previous[second.length];
+    }
 
-        void setBridge(Node r)
+    /**
+     * lcsLengthBitParallel(first[], second[]): method that computes the length of
+     * the longest common subsequence of two sequences of Strings 64 columns at
+     * a time (see lcsLengthBitParallel(int[], int[])).
+     * @param first the first sequence of Strings for comparison
+     * @param second the second sequence of Strings for comparison
+     * @return the length of the longest common subsequence
+     */
+    static int lcsLengthBitParallel(String[] first, String[] second)
+    {
+        SymbolTable table = new SymbolTable();
+        return lcsLengthBitParallel(table.intern(first), table.intern(second));
+    }
+
+    /**
+     * lcsLengthBitParallel(first[], second[]): method that computes the length of
+     * the longest common subsequence 64 columns at a time (the bit-vector
+     * algorithm of Allison and Dix, as given by Hyyro).
+     *
+     * Each row of the table is kept as a bit vector V over the columns, with a 0
+     * bit in every column where the row's LCS grows by one over the column
+     * before it, so the LCS of the row is the number of 0 bits. With M the
+     * columns that match the row's symbol, the next row is
+     *     V' = (V + (V & M)) | (V & ~M)
+     * which is one addition, with carries from word to word, per 64 columns.
+     * The match bits of a symbol are set from a list of the columns it occurs
+     * in, so memory stays linear in the length of the sequences.
+     * @param first the first sequence of symbol ids for comparison
+     * @param second the second sequence of symbol ids for comparison
+     * @return the length of the longest common subsequence
+     */
+    static int lcsLengthBitParallel(int[] first, int[] second)
+    {
+        // the shorter sequence runs along the bit vector
+        if(second.length > first.length)
+        {
+            int[] swap = first;
+            first = second;
+            second = swap;
+        }
+        int words = (second.length + 63) >>> 6;
+
+        // the columns of each symbol, as a list threaded through next[]
+        // starting from the first column the symbol occurs in
+        int symbolCount = 0;
+        for(int symbol : second)
+        {
+            symbolCount = Math.max(symbolCount, symbol + 1);
+        }
+        int[] head = new int[symbolCount];
+        Arrays.fill(head, -1);
+        int[] next = new int[second.length];
+        for(int col = second.length - 1; col >= 0; col--)
+        {
+            next[col] = head[second[col]];
+            head[second[col]] = col;
+        }
+
+        // all 1s: the LCS with an empty prefix is 0 in every column. The bits
+        // past the last column stay 1, since they never match.
+        long[] v = new long[words];
+        Arrays.fill(v, -1L);
+        long[] match = new long[words];
+        for(int row = 0; row < first.length; row++)
+        {
+            int start = (first[row] < symbolCount) ? head[first[row]] : -1;
+            if(start < 0)
+            {
+                continue;
+            }
+            for(int col = start; col >= 0; col = next[col])
+            {
+                match[col >>> 6] |= 1L << col;
+            }
+
+            long carry = 0;
+            for(int w = 0; w < words; w++)
+            {
+                long u = v[w] & match[w];
+                long sum = v[w] + carry;
+                carry = Long.compareUnsigned(sum, v[w]) < 0 ? 1 : 0;
+                sum += u;
+                carry |= Long.compareUnsigned(sum, u) < 0 ? 1 : 0;
+                v[w] = sum | (v[w] & ~match[w]);
+            }
+
+            for(int col = start; col >= 0; col = next[col])
+            {
+                match[col >>> 6] = 0;
+            }
+        }
+
+        int ones = 0;
+        for(int w = 0; w < words; w++)
+        {
+            ones += Long.bitCount(v[w]);
+        }
+        return words * 64 - ones;
+    }
+
+    /**
+     * lcsHirschberg(first[], second[]): method that computes a longest common
+     * subsequence in space linear in the length of the sequences (Hirschberg's
+     * algorithm), on the common fork/join pool.
+     * @param first the first sequence of Strings for comparison
+     * @param second the second sequence of Strings for comparison
+     * @return the longest common subsequence, in order
+     */
+    static String[] lcsHirschberg(String[] first, String[] second)
+    {
+        return lcsHirschberg(first, second, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * lcsHirschberg(first[], second[], pool): method that computes a longest
+     * common subsequence of two sequences of Strings in linear space, on a
+     * given fork/join pool (see lcsHirschberg(int[], int[], ForkJoinPool)).
+     * @param first the first sequence of Strings for comparison
+     * @param second the second sequence of Strings for comparison
+     * @param pool the pool to run the halves on
+     * @return the longest common subsequence, in order
+     */
+    static String[] lcsHirschberg(String[] first, String[] second, ForkJoinPool pool)
+    {
+        SymbolTable table = new SymbolTable();
+        return table.symbols(lcsHirschberg(table.intern(first), table.intern(second), pool));
+    }
+
+    /**
+     * lcsHirschberg(first[], second[]): method that computes a longest common
+     * subsequence in linear space, on the common fork/join pool.
+     * @param first the first sequence of symbol ids for comparison
+     * @param second the second sequence of symbol ids for comparison
+     * @return the longest common subsequence, in order
+     */
+    static int[] lcsHirschberg(int[] first, int[] second)
+    {
+        return lcsHirschberg(first, second, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * lcsHirschberg(first[], second[], pool): method that computes a longest
+     * common subsequence in linear space, on a given fork/join pool.
+     *
+     * The LCS lengths of the first half of first against every prefix of
+     * second, and of the second half against every suffix, take one pass
+     * each with rolling rows (see lcsLength). Where their sum is largest,
+     * second splits into the parts that the two halves of first have their
+     * share of the LCS in, and the two halves are solved independently, in
+     * parallel while they are large enough to be worth it. Small problems are
+     * solved with a small table.
+     * @param first the first sequence of symbol ids for comparison
+     * @param second the second sequence of symbol ids for comparison
+     * @param pool the pool to run the halves on
+     * @return the longest common subsequence, in order
+     */
+    static int[] lcsHirschberg(int[] first, int[] second, ForkJoinPool pool)
+    {
+        int[] out = new int[Math.min(first.length, second.length)];
+        int count = pool.invoke(new HirschbergTask(first, second, 0, first.length,
+            0, second.length, out, 0));
+        return Arrays.copyOf(out, count);
+    }
+
+    /* task that writes the LCS of first[aLow, aHigh) and second[bLow, bHigh)
+       to out[], starting at offset, and returns its length */
+    private static class HirschbergTask extends RecursiveTask<Integer>
+    {
+        private static final long serialVersionUID = 1L;
+
+        // problems of up to this many cells are solved with a table
+        static final int TABLE_CELLS = 1 << 12;
+        // problems of fewer cells than this are not split across threads
+        static final long PARALLEL_CELLS = 1L << 20;
+
+        final int[] first, second, out;
+        final int aLow, aHigh, bLow, bHigh, offset;
+
+        HirschbergTask(int[] first, int[] second, int aLow, int aHigh,
+            int bLow, int bHigh, int[] out, int offset)
         {
-            bridge = r;
+            this.first = first;
+            this.second = second;
+            this.aLow = aLow;
+            this.aHigh = aHigh;
+            this.bLow = bLow;
+            this.bHigh = bHigh;
+            this.out = out;
+            this.offset = offset;
         }
 
-        Node getBridge()
+        @Override
+        protected Integer compute()
         {
-            return bridge;
+            int aLength = aHigh - aLow;
+            int bLength = bHigh - bLow;
+            if(aLength == 0 || bLength == 0)
+            {
+                return 0;
+            }
+            if((long)aLength * bLength <= TABLE_CELLS || aLength == 1)
+            {
+                return solveWithTable();
+            }
+
+            // split first in half, and second where the LCS splits
+            int aMid = aLow + aLength / 2;
+            int[] forward = forwardLengths(aLow, aMid);
+            int[] backward = backwardLengths(aMid, aHigh);
+            int split = 0;
+            for(int k = 1; k <= bLength; k++)
+            {
+                if(forward[k] + backward[bLength-k] > forward[split] + backward[bLength-split])
+                {
+                    split = k;
+                }
+            }
+
+            HirschbergTask left = new HirschbergTask(first, second, aLow, aMid,
+                bLow, bLow + split, out, offset);
+            HirschbergTask right = new HirschbergTask(first, second, aMid, aHigh,
+                bLow + split, bHigh, out, offset + forward[split]);
+            if((long)aLength * bLength >= PARALLEL_CELLS)
+            {
+                left.fork();
+                int rightCount = right.compute();
+                return left.join() + rightCount;
+            }
+            return left.compute() + right.compute();
+        }
+
+        /* the LCS lengths of first[from, to) against each prefix of second's range */
+        int[] forwardLengths(int from, int to)
+        {
+            int bLength = bHigh - bLow;
+            int[] previous = new int[bLength+1];
+            int[] current = new int[bLength+1];
+            for(int row = from; row < to; row++)
+            {
+                int symbol = first[row];
+                for(int col = 1; col <= bLength; col++)
+                {
+                    current[col] = (symbol == second[bLow+col-1])
+                        ? 1 + previous[col-1] : Math.max(current[col-1], previous[col]);
+                }
+                int[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            return previous;
+        }
+
+        /* the LCS lengths of first[from, to) against each suffix of second's
+           range, indexed by the length of the suffix */
+        int[] backwardLengths(int from, int to)
+        {
+            int bLength = bHigh - bLow;
+            int[] previous = new int[bLength+1];
+            int[] current = new int[bLength+1];
+            for(int row = to - 1; row >= from; row--)
+            {
+                int symbol = first[row];
+                for(int col = 1; col <= bLength; col++)
+                {
+                    current[col] = (symbol == second[bHigh-col])
+                        ? 1 + previous[col-1] : Math.max(current[col-1], previous[col]);
+                }
+                int[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            return previous;
+        }
+
+        /* solve a small problem with a full table of lengths, then walk back
+           through it from the last cell */
+        int solveWithTable()
+        {
+            int aLength = aHigh - aLow;
+            int bLength = bHigh - bLow;
+            int[][] table = new int[aLength+1][bLength+1];
+            for(int row = 1; row <= aLength; row++)
+            {
+                for(int col = 1; col <= bLength; col++)
+                {
+                    table[row][col] = (first[aLow+row-1] == second[bLow+col-1])
+                        ? 1 + table[row-1][col-1] : Math.max(table[row][col-1], table[row-1][col]);
+                }
+            }
+
+            int count = table[aLength][bLength];
+            int row = aLength, col = bLength, index = offset + count;
+            while(row > 0 && col > 0)
+            {
+                if(first[aLow+row-1] == second[bLow+col-1])
+                {
+                    out[--index] = first[aLow+row-1];
+                    row--;
+                    col--;
+                }
+                else if(table[row-1][col] >= table[row][col-1])
+                {
+                    row--;
+                }
+                else
+                {
+                    col--;
+                }
+            }
+            return count;
         }
     }
 
@@ -157,5 +716,16 @@ public class LCS
             "de", "tuh", "de", "huh", "jon", "y", "stewart"};
 
         LCS.lcs(first, second);
+
+        // the length alone, in linear space
+        System.out.println("Length: " + LCS.lcsLength(first, second)
+            + " (bit-parallel: " + LCS.lcsLengthBitParallel(first, second) + ")");
+
+        // the LCS itself, in linear space
+        System.out.println("Hirschberg: " + String.join(" ", LCS.lcsHirschberg(first, second)));
+
+        // every distinct LCS
+        System.out.println("All:");
+        LCS.allLcs(first, second, 100, lcs -> System.out.println(String.join(" ", lcs)));
     }
 }
@@ -0,0 +1,103 @@
+/**
+ * LCSBenchmark.java
+ *
+ * This program compares the time LCS takes to compute a longest common
+ * subsequence with its memoization table (filling the table, then reading out
+ * the LCS with backtrack) against Hirschberg's linear-space algorithm, on one
+ * thread and on a fork/join pool of several.
+ *
+ * The sequences are random tokens from a small vocabulary, so that the LCS is
+ * long. Lengths double up to the maximum; the table is skipped once it no
+ * longer fits in memory. Each time is the best of a few runs after a warm-up
+ * run, in milliseconds.
+ *
+ * Usage: LCSBenchmark [max length] [vocabulary size] [threads]
+ */
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class LCSBenchmark
+{
+    static final int RUNS = 3;
+
+    /**
+     * tokens(random, length, vocabulary): method that makes a sequence of random
+     * tokens.
+     * @param random the source of the tokens
+     * @param length the length of the sequence
+     * @param vocabulary the number of distinct tokens
+     * @return the sequence
+     */
+    static String[] tokens(Random random, int length, int vocabulary)
+    {
+        String[] sequence = new String[length];
+        for(int i = 0; i < length; i++)
+        {
+            sequence[i] = "t" + random.nextInt(vocabulary);
+        }
+        return sequence;
+    }
+
+    /**
+     * bestTime(run): method that times a run once to warm up, then RUNS more
+     * times.
+     * @param run the code to time
+     * @return the fastest of the timed runs, in milliseconds
+     */
+    static double bestTime(Runnable run)
+    {
+        run.run();
+        long best = Long.MAX_VALUE;
+        for(int i = 0; i < RUNS; i++)
+        {
+            long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e6;
+    }
+
+    public static void main(String args[])
+    {
+        int maxLength = (args.length > 0) ? Integer.parseInt(args[0]) : 8000;
+        int vocabulary = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+        int threads = (args.length > 2) ? Integer.parseInt(args[2])
+            : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+
+        System.out.println("length\ttable ms\thirschberg ms\thirschberg x" + threads + " ms");
+        boolean tableFits = true;
+        for(int length = 250; length <= maxLength; length *= 2)
+        {
+            Random random = new Random(length);
+            String[] first = tokens(random, length, vocabulary);
+            String[] second = tokens(random, length, vocabulary);
+
+            String table = "-";
+            if(tableFits)
+            {
+                try
+                {
+                    table = String.format("%.1f", bestTime(() -> {
+                        LCS.memoize(first, second);
+                        LCS.backtrack(first, second);
+                    }));
+                }
+                catch(OutOfMemoryError e)
+                {
+                    table = "out of memory";
+                    tableFits = false;
+                }
+                LCS.memo = null;
+            }
+            double sequential = bestTime(() -> LCS.lcsHirschberg(first, second, single));
+            double parallel = bestTime(() -> LCS.lcsHirschberg(first, second, pool));
+            System.out.println(length + "\t" + table + "\t" + String.format("%.1f", sequential)
+                + "\t" + String.format("%.1f", parallel));
+        }
+        single.shutdown();
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,346 @@
+/**
+ * MyersDiff.java
+ *
+ * This program computes the difference between two sequences with Myers'
+ * O((n+m)D) algorithm, where D is the number of elements inserted and deleted:
+ * for two mostly similar versions of a large file, D is small, and the diff
+ * takes far less time and memory than the n*m table of LCS. The elements it
+ * keeps are a longest common subsequence.
+ *
+ * The edits lie on a shortest path through the grid of the two sequences,
+ * where a step right deletes an element of the first, a step down inserts an
+ * element of the second, and a diagonal step keeps an element common to both.
+ * Searching for the path from both ends at once finds a "middle snake", a run
+ * of kept elements that the path goes through halfway along its edits, and
+ * the parts before and after it are diffed the same way. Only the furthest
+ * point reached on each diagonal is kept, so memory is linear in n+m.
+ *
+ * The edit script is streamed to a consumer as hunks, in order, each a run
+ * of elements kept, deleted or inserted. Sequences of Strings are interned
+ * with a SymbolTable, as in LCS, so the search compares ints.
+ *
+ * Usage: MyersDiff [first file] [second file]
+ * prints the lines of the two files, kept (" "), deleted ("-") and inserted
+ * ("+"); with no files it diffs a sample.
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class MyersDiff
+{
+    /* the kinds of hunk in an edit script */
+    enum Kind { KEEP, DELETE, INSERT }
+
+    /**
+     * A run of elements kept, deleted or inserted. A hunk starts at position
+     * firstStart of the first sequence and secondStart of the second, and
+     * covers length elements of the first (KEEP and DELETE) and of the second
+     * (KEEP and INSERT).
+     */
+    static class Hunk
+    {
+        final Kind kind;
+        final int firstStart;
+        final int secondStart;
+        final int length;
+
+        Hunk(Kind kind, int firstStart, int secondStart, int length)
+        {
+            this.kind = kind;
+            this.firstStart = firstStart;
+            this.secondStart = secondStart;
+            this.length = length;
+        }
+
+        @Override
+        public String toString()
+        {
+            return kind + " " + length + " at " + firstStart + "," + secondStart;
+        }
+    }
+
+    final int[] first;
+    final int[] second;
+    final Consumer<Hunk> consumer;
+
+    // the furthest x reached on each diagonal k, forward from the start and
+    // backward from the end, at index k + offset
+    final int[] forward;
+    final int[] backward;
+    final int offset;
+
+    // the middle snake found by middleSnake: from (snakeX, snakeY) to
+    // (snakeU, snakeV), relative to the start of the part searched
+    int snakeX, snakeY, snakeU, snakeV;
+
+    // the hunk being built, which grows until an edit of another kind follows
+    Kind pendingKind;
+    int pendingFirst, pendingSecond, pendingLength;
+
+    // the number of elements deleted and inserted so far
+    int edits;
+
+    private MyersDiff(int[] first, int[] second, Consumer<Hunk> consumer)
+    {
+        this.first = first;
+        this.second = second;
+        this.consumer = consumer;
+        offset = (first.length + second.length + 1) / 2 + 1;
+        forward = new int[2 * offset + 1];
+        backward = new int[2 * offset + 1];
+    }
+
+    /**
+     * diff(first[], second[], consumer): method that diffs two sequences of
+     * Strings, interning them with a fresh SymbolTable (see
+     * diff(int[], int[], Consumer)).
+     * @param first the first sequence of Strings
+     * @param second the second sequence of Strings
+     * @param consumer the consumer of the hunks of the edit script, in order
+     * @return the number of elements deleted and inserted
+     */
+    static int diff(String[] first, String[] second, Consumer<Hunk> consumer)
+    {
+        SymbolTable table = new SymbolTable();
+        return diff(table.intern(first), table.intern(second), consumer);
+    }
+
+    /**
+     * diff(first[], second[], consumer): method that computes a shortest edit
+     * script that turns first into second, and passes it to the consumer as
+     * hunks, in order. Adjacent hunks are of different kinds, except that a
+     * DELETE can be followed by an INSERT or the other way around.
+     * @param first the first sequence of symbol ids
+     * @param second the second sequence of symbol ids
+     * @param consumer the consumer of the hunks of the edit script, in order
+     * @return the number of elements deleted and inserted
+     */
+    static int diff(int[] first, int[] second, Consumer<Hunk> consumer)
+    {
+        MyersDiff diff = new MyersDiff(first, second, consumer);
+        diff.compare(0, first.length, 0, second.length);
+        diff.flush();
+        return diff.edits;
+    }
+
+    /**
+     * compare(aLow, aHigh, bLow, bHigh): method that emits the edit script of
+     * first[aLow, aHigh) against second[bLow, bHigh).
+     */
+    private void compare(int aLow, int aHigh, int bLow, int bHigh)
+    {
+        // the common prefix and suffix are kept, whatever lies between
+        int prefix = 0;
+        while(aLow + prefix < aHigh && bLow + prefix < bHigh
+            && first[aLow+prefix] == second[bLow+prefix])
+        {
+            prefix++;
+        }
+        emit(Kind.KEEP, aLow, bLow, prefix);
+        aLow += prefix;
+        bLow += prefix;
+        int suffix = 0;
+        while(aLow < aHigh - suffix && bLow < bHigh - suffix
+            && first[aHigh-suffix-1] == second[bHigh-suffix-1])
+        {
+            suffix++;
+        }
+        aHigh -= suffix;
+        bHigh -= suffix;
+
+        if(aLow == aHigh)
+        {
+            emit(Kind.INSERT, aLow, bLow, bHigh - bLow);
+        }
+        else if(bLow == bHigh)
+        {
+            emit(Kind.DELETE, aLow, bLow, aHigh - aLow);
+        }
+        else
+        {
+            int d = middleSnake(aLow, aHigh, bLow, bHigh);
+            if(d == 1)
+            {
+                // after the common prefix, the one edit comes first
+                if(aHigh - aLow > bHigh - bLow)
+                {
+                    emit(Kind.DELETE, aLow, bLow, 1);
+                    emit(Kind.KEEP, aLow + 1, bLow, bHigh - bLow);
+                }
+                else
+                {
+                    emit(Kind.INSERT, aLow, bLow, 1);
+                    emit(Kind.KEEP, aLow, bLow + 1, aHigh - aLow);
+                }
+            }
+            else
+            {
+                // the snake is overwritten by the recursion, so keep it
+                int x = snakeX, y = snakeY, u = snakeU, v = snakeV;
+                compare(aLow, aLow + x, bLow, bLow + y);
+                emit(Kind.KEEP, aLow + x, bLow + y, u - x);
+                compare(aLow + u, aHigh, bLow + v, bHigh);
+            }
+        }
+        emit(Kind.KEEP, aHigh, bHigh, suffix);
+    }
+
+    /**
+     * middleSnake(aLow, aHigh, bLow, bHigh): method that finds the middle snake
+     * of the shortest edit script of first[aLow, aHigh) against
+     * second[bLow, bHigh), searching forward from the start and backward from
+     * the end, one edit further each round, until the two meet.
+     * @return the number of edits of the shortest edit script
+     */
+    private int middleSnake(int aLow, int aHigh, int bLow, int bHigh)
+    {
+        int n = aHigh - aLow;
+        int m = bHigh - bLow;
+        // the diagonal the end is on; the backward search numbers its
+        // diagonals from there, so that its diagonal delta - k is forward's k
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        forward[offset+1] = 0;
+        backward[offset+1] = 0;
+        for(int d = 0; d <= (n + m + 1) / 2; d++)
+        {
+            for(int k = -d; k <= d; k += 2)
+            {
+                // step down from diagonal k+1, or right from diagonal k-1,
+                // whichever got further
+                int x = (k == -d || (k != d && forward[offset+k-1] < forward[offset+k+1]))
+                    ? forward[offset+k+1] : forward[offset+k-1] + 1;
+                int y = x - k;
+                int x0 = x, y0 = y;
+                while(x < n && y < m && first[aLow+x] == second[bLow+y])
+                {
+                    x++;
+                    y++;
+                }
+                forward[offset+k] = x;
+                // the backward search has reached diagonal delta - k with
+                // d - 1 edits, so if it got this far the paths meet
+                if(odd && k >= delta - (d - 1) && k <= delta + (d - 1)
+                    && x + backward[offset+delta-k] >= n)
+                {
+                    snakeX = x0;
+                    snakeY = y0;
+                    snakeU = x;
+                    snakeV = y;
+                    return 2 * d - 1;
+                }
+            }
+            for(int k = -d; k <= d; k += 2)
+            {
+                // the same from the end, with x counted back from aHigh
+                int x = (k == -d || (k != d && backward[offset+k-1] < backward[offset+k+1]))
+                    ? backward[offset+k+1] : backward[offset+k-1] + 1;
+                int y = x - k;
+                int x0 = x, y0 = y;
+                while(x < n && y < m && first[aHigh-x-1] == second[bHigh-y-1])
+                {
+                    x++;
+                    y++;
+                }
+                backward[offset+k] = x;
+                if(!odd && k >= delta - d && k <= delta + d
+                    && x + forward[offset+delta-k] >= n)
+                {
+                    snakeX = n - x;
+                    snakeY = m - y;
+                    snakeU = n - x0;
+                    snakeV = m - y0;
+                    return 2 * d;
+                }
+            }
+        }
+        // not reached: the searches meet by the time they have made n+m edits
+        throw new IllegalStateException("no middle snake");
+    }
+
+    /**
+     * emit(kind, firstStart, secondStart, length): method that adds a run of
+     * elements to the edit script, joining it to the pending hunk if that is
+     * of the same kind.
+     */
+    private void emit(Kind kind, int firstStart, int secondStart, int length)
+    {
+        if(length == 0)
+        {
+            return;
+        }
+        if(kind != Kind.KEEP)
+        {
+            edits += length;
+        }
+        if(kind == pendingKind)
+        {
+            pendingLength += length;
+            return;
+        }
+        flush();
+        pendingKind = kind;
+        pendingFirst = firstStart;
+        pendingSecond = secondStart;
+        pendingLength = length;
+    }
+
+    /**
+     * flush(): method that passes the pending hunk, if any, to the consumer.
+     */
+    private void flush()
+    {
+        if(pendingKind != null)
+        {
+            consumer.accept(new Hunk(pendingKind, pendingFirst, pendingSecond, pendingLength));
+            pendingKind = null;
+        }
+    }
+
+    /**
+     * main(args[]): main method diffs the lines of two files, or a sample.
+     * @param args the two files, or none
+     */
+    public static void main(String args[]) throws IOException
+    {
+        String[] first, second;
+        if(args.length >= 2)
+        {
+            List<String> firstLines = Files.readAllLines(Paths.get(args[0]));
+            List<String> secondLines = Files.readAllLines(Paths.get(args[1]));
+            first = firstLines.toArray(new String[0]);
+            second = secondLines.toArray(new String[0]);
+        }
+        else
+        {
+            first = new String[] {"in", "ni", "nat", "jag", "dep", "y", "togo",
+                "il", "ru", "pur", "de", "tuh", "huh", "jon", "stewart"};
+            second = new String[] {"nat", "in", "jag", "dep", "huh", "tuh", "il",
+                "de", "tuh", "de", "huh", "jon", "y", "stewart"};
+        }
+
+        final String[] a = first, b = second;
+        int edits = diff(a, b, hunk -> {
+            for(int i = 0; i < hunk.length; i++)
+            {
+                switch(hunk.kind)
+                {
+                    case KEEP:
+                        System.out.println(" " + a[hunk.firstStart+i]);
+                        break;
+                    case DELETE:
+                        System.out.println("-" + a[hunk.firstStart+i]);
+                        break;
+                    default:
+                        System.out.println("+" + b[hunk.secondStart+i]);
+                        break;
+                }
+            }
+        });
+        System.out.println("Edits: " + edits);
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * SymbolTable.java
+ *
+ * A dictionary that interns tokens as small int ids: equal tokens get equal
+ * ids, and ids count up from 0 in the order the tokens are first seen. Once
+ * two sequences are interned with the same table, comparing their elements
+ * is comparing ints, which is what the inner loops of LCS and MyersDiff do.
+ * Keep one table for all the sequences that are to be compared.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+public class SymbolTable
+{
+    private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+    private final ArrayList<String> symbols = new ArrayList<String>();
+
+    /**
+     * id(token): method that finds the id of a token, adding the token to the
+     * table if it is new.
+     * @param token the token
+     * @return the id of the token
+     */
+    int id(String token)
+    {
+        Integer id = ids.get(token);
+        if(id == null)
+        {
+            id = symbols.size();
+            ids.put(token, id);
+            symbols.add(token);
+        }
+        return id;
+    }
+
+    /**
+     * intern(tokens[]): method that interns a sequence of tokens.
+     * @param tokens the sequence of tokens
+     * @return the ids of the tokens, in order
+     */
+    int[] intern(String[] tokens)
+    {
+        int[] sequence = new int[tokens.length];
+        for(int i = 0; i < tokens.length; i++)
+        {
+            sequence[i] = id(tokens[i]);
+        }
+        return sequence;
+    }
+
+    /**
+     * symbol(id): method that finds the token of an id.
+     * @param id an id returned by id or intern
+     * @return the token
+     */
+    String symbol(int id)
+    {
+        return symbols.get(id);
+    }
+
+    /**
+     * symbols(sequence[]): method that turns a sequence of ids back into tokens.
+     * @param sequence the sequence of ids
+     * @return the tokens, in order
+     */
+    String[] symbols(int[] sequence)
+    {
+        String[] tokens = new String[sequence.length];
+        for(int i = 0; i < sequence.length; i++)
+        {
+            tokens[i] = symbols.get(sequence[i]);
+        }
+        return tokens;
+    }
+
+    /**
+     * size(): method that counts the distinct tokens in the table.
+     * @return the number of tokens, one more than the largest id
+     */
+    int size()
+    {
+        return symbols.size();
+    }
+}